@@ -0,0 +1,236 @@
+package risk.agent.mc.data;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes the {@link RiskAction}s of the engine as a single long, so the search tree can store and compare actions
+ * without holding and hashing action objects.
+ * The type is stored in the highest bits, followed by the source, the target and the troops of the action as they are
+ * returned by {@link RiskAction#attackingId()}, {@link RiskAction#selected()} and {@link RiskAction#troops()}.
+ * Every action that is encoded is interned, so the engine gets the original object back when the action is executed.
+ * A macro action combines several actions of the engine into a single action of the search tree. Its parts are
+ * interned as well, the troops of its code hold the number of the macro action.
+ * The interned actions belong to an instance, which an agent shares between all of its trees. The fields of a code
+ * can be read without one.
+ */
+public class ActionCodec {
+  /**
+   * The code of no action, used by roots
+   */
+  public static final long NONE = -1L;
+
+  public static final int REINFORCE = 1;
+  public static final int MOVE = 2;
+  public static final int OCCUPY = 3;
+  public static final int CASUALTIES = 4;
+  public static final int CARDS = 5;
+  public static final int END_PHASE = 6;
+  public static final int MACRO = 7;
+
+  private static final int TYPE_SHIFT = 56;
+  private static final int SOURCE_SHIFT = 44;
+  private static final int TARGET_SHIFT = 32;
+  private static final long FIELD_MASK = 0xFFFL;
+  private static final long TROOPS_MASK = 0xFFFFFFFFL;
+
+  /**
+   * The actions that were encoded so far. They do not depend on a game, so all searches of a game share them.
+   * They are forgotten between games, see {@link ActionCodec#clear()}.
+   */
+  private final ConcurrentHashMap<Long, RiskAction> interned = new ConcurrentHashMap<>();
+  /**
+   * The codes of the macro actions that were encoded so far, by the hash of their parts. Macro actions whose hashes
+   * collide take the next free slot, see {@link ActionCodec#encodeMacro(long[])}.
+   */
+  private final ConcurrentHashMap<Long, Long> macroCodes = new ConcurrentHashMap<>();
+  /**
+   * The parts of the macro actions that were encoded so far, by their code
+   */
+  private final ConcurrentHashMap<Long, long[]> macroParts = new ConcurrentHashMap<>();
+  private final AtomicInteger macroCount = new AtomicInteger();
+
+  /**
+   * Encodes the given action and remembers it, so it can be decoded again
+   * @param action the action to encode
+   * @return the code of the action
+   */
+  public long encode(RiskAction action) {
+    long code = codeOf(action);
+    interned.putIfAbsent(code, action);
+    return code;
+  }
+
+  /**
+   * The code the given action is encoded with, without remembering the action.
+   * Equal actions get the same code, see {@link ActionCodec#encode(RiskAction)}.
+   * @param action the action to get the code of
+   * @return the code of the action
+   */
+  public static long codeOf(RiskAction action) {
+    return pack(typeOf(action), action.attackingId(), action.selected(), action.troops());
+  }
+
+  /**
+   * Forgets all encoded actions and macro actions, so they are not kept from one game to the next. Codes that were
+   * returned before can no longer be decoded, so this must only be called while no tree with such codes is in use.
+   */
+  public void clear() {
+    interned.clear();
+    macroCodes.clear();
+    macroParts.clear();
+  }
+
+  /**
+   * Encodes the given actions as one macro action and remembers its parts. The parts are sorted by their code, so the
+   * same parts in any order get the same code and are executed in the same order. Macro actions must therefore only
+   * combine actions whose order does not matter, like the reinforcements of a turn.
+   * @param parts the codes of the actions the macro action executes, see {@link ActionCodec#encode(RiskAction)}
+   * @return the code of the macro action
+   */
+  public long encodeMacro(long[] parts) {
+    long[] sorted = sort(parts);
+    for(long slot = hash(sorted); ; slot++) {
+      long code = macroCodes.computeIfAbsent(slot, key -> {
+        long created = pack(MACRO, -1, -1, macroCount.getAndIncrement());
+        macroParts.put(created, sorted);
+        return created;
+      });
+      if(Arrays.equals(macroParts.get(code), sorted))
+        return code;
+    }
+  }
+
+  /**
+   * The code of the macro action with the given parts in any order, without encoding a new one
+   * @param parts the codes of the actions the macro action executes
+   * @return the code of the macro action or {@link ActionCodec#NONE} if no macro action has these parts
+   */
+  public long findMacro(long[] parts) {
+    parts = sort(parts);
+    for(long slot = hash(parts); ; slot++) {
+      Long code = macroCodes.get(slot);
+      if(code == null || Arrays.equals(macroParts.get(code), parts))
+        return code == null ? NONE : code;
+    }
+  }
+
+  /**
+   * If the given code is a macro action, see {@link ActionCodec#encodeMacro(long[])}
+   * @param code the code of the action
+   * @return true if the action is a macro action, false if not
+   */
+  public static boolean isMacro(long code) {
+    return code != NONE && type(code) == MACRO;
+  }
+
+  /**
+   * The amount of actions of the engine the given action executes
+   * @param code the code of the action
+   * @return the amount of parts of a macro action, 1 for all other actions
+   */
+  public int partCount(long code) {
+    return isMacro(code) ? macroParts.get(code).length : 1;
+  }
+
+  /**
+   * An action of the engine the given action executes
+   * @param code the code of the action
+   * @param index the index of the part, between 0 and {@link ActionCodec#partCount(long)}
+   * @return the code of the part of a macro action, the given code for all other actions
+   */
+  public long part(long code, int index) {
+    return isMacro(code) ? macroParts.get(code)[index] : code;
+  }
+
+  /**
+   * The action of the given code, as it was given to {@link ActionCodec#encode(RiskAction)}
+   * @param code the code of the action
+   * @return the action or null if the code is {@link ActionCodec#NONE} or a macro action
+   */
+  public RiskAction decode(long code) {
+    return code == NONE ? null : interned.get(code);
+  }
+
+  /**
+   * The type of the action of the given code
+   * @param code the code of the action
+   * @return one of the type constants of {@link ActionCodec}
+   */
+  public static int type(long code) {
+    return (int) (code >>> TYPE_SHIFT);
+  }
+
+  /**
+   * The source of the action of the given code, see {@link RiskAction#attackingId()}
+   * @param code the code of the action
+   * @return the id of the source territory or a negative special id
+   */
+  public static int source(long code) {
+    return signed(code >>> SOURCE_SHIFT);
+  }
+
+  /**
+   * The target of the action of the given code, see {@link RiskAction#selected()}
+   * @param code the code of the action
+   * @return the id of the target territory or a negative special id
+   */
+  public static int target(long code) {
+    return signed(code >>> TARGET_SHIFT);
+  }
+
+  /**
+   * The troops of the action of the given code, see {@link RiskAction#troops()}
+   * @param code the code of the action
+   * @return the troops of the action
+   */
+  public static int troops(long code) {
+    return (int) (code & TROOPS_MASK);
+  }
+
+  private static int typeOf(RiskAction action) {
+    if(action.isEndPhase())
+      return END_PHASE;
+    int targetId = action.selected();
+    if(targetId == -1)
+      return CASUALTIES;
+    if(targetId == -2)
+      return OCCUPY;
+    if(targetId < 0 || action.isCardIds() || action.isBonus())
+      return CARDS;
+    return action.attackingId() == -1 ? REINFORCE : MOVE;
+  }
+
+  private static long pack(int type, int source, int target, int troops) {
+    return (long) type << TYPE_SHIFT | (source & FIELD_MASK) << SOURCE_SHIFT | (target & FIELD_MASK) << TARGET_SHIFT
+            | (troops & TROOPS_MASK);
+  }
+
+  /**
+   * Sorts a copy of the given parts of a macro action, so the given array can still be changed by the caller
+   */
+  private static long[] sort(long[] parts) {
+    long[] sorted = parts.clone();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  /**
+   * Hashes the sorted parts of a macro action without boxing them
+   */
+  private static long hash(long[] parts) {
+    long hash = parts.length;
+    for(long part : parts) {
+      hash = (hash ^ part) * 0x9E3779B97F4A7C15L;
+      hash ^= hash >>> 32;
+    }
+    return hash;
+  }
+
+  private static int signed(long field) {
+    return (int) ((field & FIELD_MASK) << 20) >> 20;
+  }
+}
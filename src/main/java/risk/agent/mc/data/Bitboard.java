@@ -0,0 +1,175 @@
+package risk.agent.mc.data;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskTerritory;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The owners of all territories as bitmasks, one mask per player with a bit for every territory the player occupies.
+ * Together with the masks of the {@link BoardTopology} most ownership questions about neighbours and continents can
+ * be answered with a few bit operations instead of walking the territories.
+ * A territory is an enemy of a player if it is occupied by any other player.
+ */
+public class Bitboard {
+  private final BoardTopology topology;
+  private final long[] ownerMasks;
+  private long occupiedMask = 0L;
+
+  /**
+   * Creates a bitboard without any occupied territory
+   * @param topology the {@link BoardTopology} of the game
+   * @param playerCount the amount of players of the game
+   */
+  public Bitboard(BoardTopology topology, int playerCount) {
+    this.topology = topology;
+    this.ownerMasks = new long[playerCount];
+  }
+
+  /**
+   * Creates a bitboard with the owners of the given game
+   * @param game the game to read the owners from
+   * @param topology the {@link BoardTopology} of the game
+   * @return a new bitboard
+   */
+  public static Bitboard of(Risk game, BoardTopology topology) {
+    Bitboard bitboard = new Bitboard(topology, game.getNumberOfPlayers());
+    for(Map.Entry<Integer, RiskTerritory> entry : game.getBoard().getTerritories().entrySet()) {
+      bitboard.setOwner(entry.getKey(), -1, entry.getValue().getOccupantPlayerId());
+    }
+    return bitboard;
+  }
+
+  /**
+   * Removes all owners
+   */
+  public void clear() {
+    Arrays.fill(ownerMasks, 0L);
+    occupiedMask = 0L;
+  }
+
+  /**
+   * Overwrites the owners of this bitboard with the ones of the given bitboard
+   * @param other a bitboard of the same game
+   */
+  public void copyFrom(Bitboard other) {
+    System.arraycopy(other.ownerMasks, 0, ownerMasks, 0, ownerMasks.length);
+    occupiedMask = other.occupiedMask;
+  }
+
+  /**
+   * Moves a territory from one owner to another
+   * @param territoryId the territory that changes its owner
+   * @param oldOwner the previous owner, a negative value if the territory was not occupied
+   * @param newOwner the new owner, a negative value if the territory is no longer occupied
+   */
+  public void setOwner(int territoryId, int oldOwner, int newOwner) {
+    long bit = 1L << territoryId;
+    if(oldOwner >= 0)
+      ownerMasks[oldOwner] &= ~bit;
+    if(newOwner >= 0) {
+      ownerMasks[newOwner] |= bit;
+      occupiedMask |= bit;
+    } else {
+      occupiedMask &= ~bit;
+    }
+  }
+
+  /**
+   * The territories of the given player
+   * @param player the player to check
+   * @return a mask with the bit of every territory of the player set
+   */
+  public long getOwnerMask(int player) {
+    return ownerMasks[player];
+  }
+
+  /**
+   * The territories that are occupied by any player
+   * @return a mask with the bit of every occupied territory set
+   */
+  public long getOccupiedMask() {
+    return occupiedMask;
+  }
+
+  /**
+   * The territories that are occupied by other players than the given one
+   * @param player the player whose enemies are requested
+   * @return a mask with the bit of every enemy territory set
+   */
+  public long getEnemyMask(int player) {
+    return player >= 0 ? occupiedMask & ~ownerMasks[player] : occupiedMask;
+  }
+
+  /**
+   * Checks if the given territory is occupied by another player than the given one
+   * @param territoryId the territory to check
+   * @param player the player from whose perspective the territory is checked
+   * @return true if the territory is an enemy territory
+   */
+  public boolean isEnemy(int territoryId, int player) {
+    return (getEnemyMask(player) & 1L << territoryId) != 0;
+  }
+
+  /**
+   * The neighbours of the given territory that are enemy territories of the given player
+   * @param territoryId the territory whose neighbours are checked
+   * @param player the player from whose perspective the neighbours are checked, usually the owner of the territory
+   * @return a mask with the bit of every enemy neighbour set
+   */
+  public long getEnemyNeighborMask(int territoryId, int player) {
+    return topology.getNeighborMask(territoryId) & getEnemyMask(player);
+  }
+
+  /**
+   * Counts the territories of a continent that belong to the given player
+   * @param continent the index of the continent
+   * @param player the player to count for
+   * @return the amount of territories of the player on the continent
+   */
+  public int countOwnedOnContinent(int continent, int player) {
+    return Long.bitCount(topology.getContinentMask(continent) & ownerMasks[player]);
+  }
+
+  /**
+   * Counts the territories of a continent that are enemy territories of the given player
+   * @param continent the index of the continent
+   * @param player the player whose enemies are counted
+   * @return the amount of enemy territories on the continent
+   */
+  public int countEnemiesOnContinent(int continent, int player) {
+    return Long.bitCount(topology.getContinentMask(continent) & getEnemyMask(player));
+  }
+
+  /**
+   * Checks if the given player occupies every territory of a continent
+   * @param continent the index of the continent
+   * @param player the player to check
+   * @return true if the whole continent belongs to the player
+   */
+  public boolean ownsContinent(int continent, int player) {
+    return (topology.getContinentMask(continent) & ~ownerMasks[player]) == 0;
+  }
+
+  /**
+   * Checks if the given territory is the only territory on its continent that does not belong to the given player
+   * @param territoryId the territory to check
+   * @param player the player that owns the rest of the continent
+   * @return true if all other territories of the continent belong to the player and this one does not
+   */
+  public boolean isLastNotOwnedOnContinent(int territoryId, int player) {
+    return (topology.getContinentMask(topology.getContinentOf(territoryId)) & ~ownerMasks[player]) == 1L << territoryId;
+  }
+
+  /**
+   * Checks if the given territory is the only territory on its continent that is not an enemy territory of the given
+   * player
+   * @param territoryId the territory to check
+   * @param player the player whose enemies own the rest of the continent
+   * @return true if all other territories of the continent belong to enemies and this one does not
+   */
+  public boolean isLastNotEnemyOnContinent(int territoryId, int player) {
+    return (topology.getContinentMask(topology.getContinentOf(territoryId)) & ~getEnemyMask(player)) == 1L << territoryId;
+  }
+}
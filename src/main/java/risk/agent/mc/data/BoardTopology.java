@@ -0,0 +1,260 @@
+package risk.agent.mc.data;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskTerritory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The parts of a {@link RiskBoard} that never change during a game: the neighbours of every territory, the continents
+ * and the distances between territories. It is built once per game and only read afterwards, so it can be shared by
+ * all threads. Territories are identified by their id, continents by their index in this topology
+ * (see {@link BoardTopology#getContinentId(int)} for the id the engine uses).
+ * The neighbour and continent masks have one bit per territory, so they require at most 64 territories.
+ */
+public class BoardTopology {
+  private final int territoryCount;
+  private final long territoryMask;
+  private final int[] neighborStart;
+  private final int[] neighbors;
+  private final long[] neighborMasks;
+  private final int[] continentOf;
+  private final int[] continentStart;
+  private final int[] continentMembers;
+  private final long[] continentMasks;
+  private final int[] continentBonus;
+  private final int[] continentIds;
+  private final boolean[] transitions;
+  private final int[] distances;
+
+  /**
+   * Reads the topology of the given board
+   * @param board the {@link RiskBoard} of the current game
+   * @throws IllegalArgumentException if the board has more than 64 territories
+   */
+  public BoardTopology(RiskBoard board) {
+    Map<Integer, RiskTerritory> territories = board.getTerritories();
+    this.territoryCount = territories.size();
+    if(territoryCount > Long.SIZE)
+      throw new IllegalArgumentException("Boards with more than " + Long.SIZE + " territories are not supported");
+    this.territoryMask = territoryCount == Long.SIZE ? -1L : (1L << territoryCount) - 1;
+
+    this.neighborStart = new int[territoryCount + 1];
+    this.neighborMasks = new long[territoryCount];
+    int[][] neighborLists = new int[territoryCount][];
+    for(int id = 0; id < territoryCount; id++) {
+      neighborLists[id] = new TreeSet<>(board.neighboringTerritories(id)).stream().mapToInt(Integer::intValue).toArray();
+      neighborStart[id + 1] = neighborStart[id] + neighborLists[id].length;
+    }
+    this.neighbors = new int[neighborStart[territoryCount]];
+    for(int id = 0; id < territoryCount; id++) {
+      System.arraycopy(neighborLists[id], 0, neighbors, neighborStart[id], neighborLists[id].length);
+      for(int neighbor : neighborLists[id]) {
+        neighborMasks[id] |= 1L << neighbor;
+      }
+    }
+
+    this.continentIds = new TreeSet<>(board.getContinents().keySet()).stream().mapToInt(Integer::intValue).toArray();
+    this.continentBonus = new int[continentIds.length];
+    for(int c = 0; c < continentIds.length; c++) {
+      continentBonus[c] = board.getContinents().get(continentIds[c]).getTroopBonus();
+    }
+    this.continentOf = new int[territoryCount];
+    this.continentMasks = new long[continentIds.length];
+    this.continentStart = new int[continentIds.length + 1];
+    for(int id = 0; id < territoryCount; id++) {
+      continentOf[id] = Arrays.binarySearch(continentIds, territories.get(id).getContinentId());
+      continentMasks[continentOf[id]] |= 1L << id;
+      continentStart[continentOf[id] + 1]++;
+    }
+    for(int c = 0; c < continentIds.length; c++) {
+      continentStart[c + 1] += continentStart[c];
+    }
+    this.continentMembers = new int[territoryCount];
+    int[] filled = new int[continentIds.length];
+    for(int id = 0; id < territoryCount; id++) {
+      int c = continentOf[id];
+      continentMembers[continentStart[c] + filled[c]++] = id;
+    }
+
+    this.transitions = new boolean[territoryCount];
+    for(int id = 0; id < territoryCount; id++) {
+      for(int i = neighborStart[id] + 1; i < neighborStart[id + 1]; i++) {
+        if(continentOf[neighbors[i]] != continentOf[neighbors[neighborStart[id]]]) {
+          transitions[id] = true;
+          break;
+        }
+      }
+    }
+
+    this.distances = new int[territoryCount * territoryCount];
+    int[] queue = new int[territoryCount];
+    for(int from = 0; from < territoryCount; from++) {
+      int row = from * territoryCount;
+      Arrays.fill(distances, row, row + territoryCount, Integer.MAX_VALUE);
+      distances[row + from] = 0;
+      int head = 0, tail = 0;
+      queue[tail++] = from;
+      while(head < tail) {
+        int id = queue[head++];
+        for(int i = neighborStart[id]; i < neighborStart[id + 1]; i++) {
+          if(distances[row + neighbors[i]] == Integer.MAX_VALUE) {
+            distances[row + neighbors[i]] = distances[row + id] + 1;
+            queue[tail++] = neighbors[i];
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The amount of territories on the board
+   * @return the amount of territories
+   */
+  public int getTerritoryCount() {
+    return territoryCount;
+  }
+
+  /**
+   * All territories of the board as a bitmask
+   * @return a mask with the bit of every territory set
+   */
+  public long getTerritoryMask() {
+    return territoryMask;
+  }
+
+  /**
+   * Calculates the distance of every territory to the closest of the given territories by expanding all of them at
+   * once, one layer of neighbours at a time
+   * @param sources a mask of the territories to measure the distance to
+   * @param distances an array with one entry per territory that is filled with the distances,
+   *                  {@link Integer#MAX_VALUE} for territories that cannot reach any of the given territories
+   */
+  public void calculateDistancesTo(long sources, int[] distances) {
+    Arrays.fill(distances, 0, territoryCount, Integer.MAX_VALUE);
+    long visited = sources;
+    long frontier = sources;
+    for(int distance = 0; frontier != 0; distance++) {
+      long next = 0L;
+      for(long remaining = frontier; remaining != 0; remaining &= remaining - 1) {
+        int id = Long.numberOfTrailingZeros(remaining);
+        distances[id] = distance;
+        next |= neighborMasks[id];
+      }
+      frontier = next & ~visited;
+      visited |= frontier;
+    }
+  }
+
+  /**
+   * The amount of neighbours of the given territory
+   * @param territoryId the territory to check
+   * @return the amount of neighbours
+   */
+  public int getNeighborCount(int territoryId) {
+    return neighborStart[territoryId + 1] - neighborStart[territoryId];
+  }
+
+  /**
+   * A neighbour of the given territory
+   * @param territoryId the territory whose neighbour is requested
+   * @param index the position of the neighbour, between 0 and {@link BoardTopology#getNeighborCount(int)}
+   * @return the id of the neighbour
+   */
+  public int getNeighbor(int territoryId, int index) {
+    return neighbors[neighborStart[territoryId] + index];
+  }
+
+  /**
+   * All neighbours of the given territory as a bitmask
+   * @param territoryId the territory to check
+   * @return a mask with the bit of every neighbour set
+   */
+  public long getNeighborMask(int territoryId) {
+    return neighborMasks[territoryId];
+  }
+
+  /**
+   * The amount of continents on the board
+   * @return the amount of continents
+   */
+  public int getContinentCount() {
+    return continentIds.length;
+  }
+
+  /**
+   * The continent the given territory lies on
+   * @param territoryId the territory to check
+   * @return the index of the continent
+   */
+  public int getContinentOf(int territoryId) {
+    return continentOf[territoryId];
+  }
+
+  /**
+   * The amount of territories on the given continent
+   * @param continent the index of the continent
+   * @return the amount of territories
+   */
+  public int getContinentSize(int continent) {
+    return continentStart[continent + 1] - continentStart[continent];
+  }
+
+  /**
+   * A territory of the given continent
+   * @param continent the index of the continent
+   * @param index the position of the territory, between 0 and {@link BoardTopology#getContinentSize(int)}
+   * @return the id of the territory
+   */
+  public int getContinentMember(int continent, int index) {
+    return continentMembers[continentStart[continent] + index];
+  }
+
+  /**
+   * All territories of the given continent as a bitmask
+   * @param continent the index of the continent
+   * @return a mask with the bit of every territory of the continent set
+   */
+  public long getContinentMask(int continent) {
+    return continentMasks[continent];
+  }
+
+  /**
+   * The troops a player gets for owning the whole continent
+   * @param continent the index of the continent
+   * @return the troop bonus of the continent
+   */
+  public int getContinentBonus(int continent) {
+    return continentBonus[continent];
+  }
+
+  /**
+   * The id the engine uses for the continent with the given index
+   * @param continent the index of the continent
+   * @return the continent id given by {@link RiskBoard}
+   */
+  public int getContinentId(int continent) {
+    return continentIds[continent];
+  }
+
+  /**
+   * If the neighbours of the given territory lie on more than one continent
+   * @param territoryId the territory to check
+   * @return true if the territory is a transition between continents
+   */
+  public boolean isTransition(int territoryId) {
+    return transitions[territoryId];
+  }
+
+  /**
+   * The length of the shortest path between two territories
+   * @param fromId the territory the path starts at
+   * @param toId the territory the path ends at
+   * @return the amount of borders that have to be crossed, {@link Integer#MAX_VALUE} if there is no path
+   */
+  public int getDistance(int fromId, int toId) {
+    return distances[fromId * territoryCount + toId];
+  }
+}
@@ -0,0 +1,125 @@
+package risk.agent.mc.data;
+
+import risk.agent.mc.mcts.SearchMode;
+
+/**
+ * These are the values that configure the MCTS-Search: how it is distributed over the available cores, how its trees
+ * are kept and bounded and which optional enhancements it uses.
+ * The defaults search like the original agent: a single sequential tree that is built anew for every move, with all
+ * optional enhancements disabled. Every enhancement can be enabled on its own.
+ */
+public class SearchSettings {
+  public static final SearchMode SEARCH_MODE = SearchMode.SEQUENTIAL;
+  public static final int WORKER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+  /**
+   * The value a pending simulation counts as during selection in {@link SearchMode#TREE_PARALLEL}. Equals the
+   * penalty for a lost game, so workers treat nodes other workers are currently simulating as lost for the moment.
+   */
+  public static final double VIRTUAL_LOSS = 1000;
+  /**
+   * The amount of simulations run at once from every selected node in {@link SearchMode#LEAF_PARALLEL}
+   */
+  public static final int LEAF_ROLLOUTS = 2 * WORKER_THREADS;
+  /**
+   * If the subtree below the chosen action should be kept and reused in the next search
+   */
+  public static final boolean REUSE_TREE = false;
+  /**
+   * If the kept subtree should be searched further in the background while the opponents move.
+   * Has no effect if {@link SearchSettings#REUSE_TREE} is disabled.
+   */
+  public static final boolean PONDERING = false;
+  /**
+   * The maximum amount of nodes of all searched trees together. Once a tree reaches its share, its least visited
+   * subtrees are collapsed into leaves, see {@link risk.agent.mc.mcts.NodeArena#evict(int, long)}.
+   * Can be set with the system property {@code trisker.maxTreeNodes}, so the budget fits the heap the agent runs with.
+   */
+  public static final int MAX_TREE_NODES = Integer.getInteger("trisker.maxTreeNodes", 1 << 21);
+  /**
+   * The maximum estimated memory of all searched trees together in bytes, handled like
+   * {@link SearchSettings#MAX_TREE_NODES}. Can be set with the system property {@code trisker.maxTreeBytes}.
+   */
+  public static final long MAX_TREE_BYTES = Long.getLong("trisker.maxTreeBytes", 768L << 20);
+  /**
+   * The estimated memory of a single game state held by a tree in bytes
+   */
+  public static final int ESTIMATED_STATE_BYTES = 8 << 10;
+  /**
+   * The fraction of the budget a tree is reduced to when subtrees are evicted, so the search does not stop to evict
+   * again right away
+   */
+  public static final double EVICTION_TARGET = 0.75;
+  /**
+   * Every how many plies a node of the search tree caches its game state, see {@link risk.agent.mc.mcts.NodeArena}.
+   * The states in between are replayed from the nearest cached state above whenever they are needed, which costs
+   * up to this amount minus one executed actions per replay but stores only a fraction of the states.
+   * 1 caches the state of every expanded node.
+   */
+  public static final int CHECKPOINT_INTERVAL = 1;
+  /**
+   * If positions that are reached by different orders of actions should share their statistics in the search tree,
+   * see {@link risk.agent.mc.sim.SimBoard#getHash()}. The values of the simulations then leave out the reward of the
+   * action that lead to the simulated node, so they only depend on the position. The ratings of the actions remain
+   * in their priors, see {@link SearchSettings#PRIORS}.
+   */
+  public static final boolean TRANSPOSITIONS = false;
+  /**
+   * If the UCB value should blend the results of a node with the results of all iterations in which its action was
+   * played later on (RAVE), so nodes with few visits are judged by more simulations.
+   * Not used in {@link SearchMode#LEAF_PARALLEL}, where the simulations of an iteration run on other boards.
+   */
+  public static final boolean RAVE = false;
+  /**
+   * The amount of visits after which the own results of a node and the results of its action elsewhere have the same
+   * weight in the UCB value, see {@link SearchSettings#RAVE}
+   */
+  public static final double RAVE_EQUIVALENCE = 100;
+  /**
+   * If nodes of the attack phase with many children should uncover their children progressively, best first, see
+   * {@link risk.agent.mc.mcts.UCBLogic#getSelectableChildCount}
+   */
+  public static final boolean PROGRESSIVE_WIDENING = false;
+  /**
+   * The least amount of children a node needs to widen progressively
+   */
+  public static final int WIDENING_MIN_CHILDREN = 8;
+  /**
+   * The amount of children a progressively widening node uncovers before its first visit
+   */
+  public static final int WIDENING_BASE = 3;
+  /**
+   * The factor of the uncovered children that grow with the visits of a progressively widening node
+   */
+  public static final double WIDENING_FACTOR = 1.d;
+  /**
+   * How fast a progressively widening node uncovers more children with its visits
+   */
+  public static final double WIDENING_EXPONENT = 0.5d;
+  /**
+   * If the actions of the agent should be rated with the rewards of the simulation when a node is expanded, so the
+   * best rated actions are simulated first instead of every action once, see
+   * {@link risk.agent.mc.mcts.NodeArena#getPrior(int)}. The actions of the opponents are not rated.
+   */
+  public static final boolean PRIORS = false;
+  /**
+   * The bias a node with the best prior of its siblings gets in the UCB value before its first visit. The bias fades
+   * with the visits of the node.
+   */
+  public static final double PRIOR_WEIGHT = 8000;
+  /**
+   * If the reinforcement phase should be searched with macro actions that place all troops of the turn at once, see
+   * {@link risk.agent.mc.util.ReinforcementPlanner}. The actions of a macro action are played one after another.
+   */
+  public static final boolean MACRO_REINFORCEMENTS = false;
+  /**
+   * The amount of front-line territories that get all troops of a turn in their own macro action
+   */
+  public static final int MACRO_TARGETS = 3;
+  /**
+   * If the outcomes of dice in the tree should be visited by their exact probabilities and valued by their expected
+   * value instead of being selected like actions, see {@link risk.agent.mc.sim.BattleOdds}.
+   * Not used in {@link SearchMode#TREE_PARALLEL}, where other workers add to the total of a chance node while its
+   * expectation is written.
+   */
+  public static final boolean CHANCE_NODES = false;
+}
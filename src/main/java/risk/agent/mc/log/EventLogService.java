@@ -6,6 +6,7 @@ import at.ac.tuwien.ifs.sge.game.risk.board.RiskTerritory;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import risk.agent.mc.mcts.NodeArena;
 import risk.agent.mc.mcts.TreeNode;
 import risk.agent.mc.mcts.UCBNode;
 
@@ -155,6 +156,18 @@ public class EventLogService {
     log(serialize(logEntry));
   }
 
+  /**
+   * Creates a TREE event log for the frontend application. The view of the tree is only created if tree events are
+   * enabled.
+   * @param tree the tree whose root should be logged
+   */
+  public static void logTree(NodeArena tree) {
+    if (!ENABLED || !TREE_EVENTS_ENABLED) {
+      return;
+    }
+    logTree(tree.view(NodeArena.ROOT));
+  }
+
   /**
    * Appends a message to the event logs file
    * @param logString the log string to append
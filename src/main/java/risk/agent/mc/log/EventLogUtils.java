@@ -12,7 +12,7 @@ public class EventLogUtils {
    */
   public static void calculateUCBRecursive(UCBNode node) {
     node.getChildren().forEach((c -> {
-      c.setUcbValue(UCBLogic.calculateUCB(c));
+      c.setUcbValue(UCBLogic.calculateUCB(c.getTree(), c.getIndex()));
       calculateUCBRecursive(c);
     }));
   }
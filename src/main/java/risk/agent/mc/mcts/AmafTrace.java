@@ -0,0 +1,101 @@
+package risk.agent.mc.mcts;
+
+import risk.agent.mc.data.ActionCodec;
+import risk.agent.mc.sim.SimMove;
+
+/**
+ * Remembers which moves were played by which player during a single MCTS iteration, so the all-moves-as-first
+ * (AMAF) statistics of the tree can be updated during backpropagation, see
+ * {@link UCBLogic#backpropagate(NodeArena, int, double, risk.agent.mc.sim.SimBoard, AmafTrace)}.
+ * Moves are compared by their kind and territories only, so reinforcing a territory with a different amount of troops
+ * or attacking with a different amount of dice counts as the same move. Moves without a territory (ending a phase,
+ * occupying, trading cards and the outcome of dice) are not remembered.
+ * Every worker has its own trace. Each player gets a stamp per possible move, so starting a new iteration does not
+ * have to clear the trace.
+ */
+public class AmafTrace {
+  /**
+   * Returned for moves that are not remembered
+   */
+  public static final int NO_KEY = -1;
+
+  private static final int MAX_TERRITORIES = 64;
+  private static final int KEY_COUNT = (MAX_TERRITORIES + 1) * MAX_TERRITORIES;
+
+  private int[] stamps = new int[0];
+  private int stamp = 0;
+
+  /**
+   * Forgets all remembered moves
+   */
+  public void clear() {
+    stamp++;
+  }
+
+  /**
+   * Remembers that the given player played a move with the given key
+   * @param player the player who played the move, negative players are ignored
+   * @param key the key of the move, see {@link AmafTrace#keyOf(int)}
+   */
+  public void add(int player, int key) {
+    if(player < 0 || key == NO_KEY)
+      return;
+    int index = player * KEY_COUNT + key;
+    if(index >= stamps.length) {
+      int[] grown = new int[(player + 1) * KEY_COUNT];
+      System.arraycopy(stamps, 0, grown, 0, stamps.length);
+      stamps = grown;
+    }
+    stamps[index] = stamp;
+  }
+
+  /**
+   * If the given player played a move with the given key since the trace was cleared last
+   * @param player the player to check
+   * @param key the key of the move, see {@link AmafTrace#keyOf(long)}
+   * @return true if the move was played, false if not
+   */
+  public boolean contains(int player, int key) {
+    int index = player * KEY_COUNT + key;
+    return player >= 0 && key != NO_KEY && index < stamps.length && stamps[index] == stamp;
+  }
+
+  /**
+   * The key of a move of a simulation
+   * @param move the encoded move, see {@link SimMove}
+   * @return the key of the move or {@link AmafTrace#NO_KEY} if it is not remembered
+   */
+  public static int keyOf(int move) {
+    switch(SimMove.type(move)) {
+      case SimMove.REINFORCE:
+        return key(-1, SimMove.target(move));
+      case SimMove.ATTACK:
+      case SimMove.FORTIFY:
+        return key(SimMove.source(move), SimMove.target(move));
+      default:
+        return NO_KEY;
+    }
+  }
+
+  /**
+   * The key of an action of the search tree
+   * @param code the code of the action, see {@link ActionCodec}
+   * @return the key of the action or {@link AmafTrace#NO_KEY} if it is not remembered
+   */
+  public static int keyOf(long code) {
+    switch(ActionCodec.type(code)) {
+      case ActionCodec.REINFORCE:
+        return key(-1, ActionCodec.target(code));
+      case ActionCodec.MOVE:
+        return key(ActionCodec.source(code), ActionCodec.target(code));
+      default:
+        return NO_KEY;
+    }
+  }
+
+  private static int key(int source, int target) {
+    if(source >= MAX_TERRITORIES || target < 0 || target >= MAX_TERRITORIES)
+      return NO_KEY;
+    return (source + 1) * MAX_TERRITORIES + target;
+  }
+}
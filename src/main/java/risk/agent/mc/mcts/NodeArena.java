@@ -0,0 +1,771 @@
+package risk.agent.mc.mcts;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import risk.agent.mc.data.ActionCodec;
+import risk.agent.mc.data.SearchSettings;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stores an MCTS-Tree in parallel arrays instead of one object per node. A node is an index into these arrays, the
+ * root is always {@link NodeArena#ROOT}. The children of a node are created at once and stored next to each other,
+ * so a node only knows its first child and the amount of children.
+ * The arrays are split into chunks of a fixed size, so the tree can grow while other workers read it. The statistics
+ * are atomic, so multiple workers can search the same tree. Workers only see the children of a node after
+ * {@link NodeArena#isExpanded(int)} returned true for it.
+ * Nodes are never freed while the tree is searched. {@link NodeArena#evict(int, long)} collapses subtrees and compacts
+ * the arrays, but must only be called while no worker searches the tree.
+ * Game states are only cached for checkpoints, nodes whose depth is a multiple of the checkpoint interval of the tree,
+ * {@link SearchSettings#CHECKPOINT_INTERVAL} unless given. The states of all other nodes are rebuilt from the nearest checkpoint
+ * above them by replaying the actions on the way down whenever they are needed.
+ * Children can be created with the hashes of the positions they lead to. The first node of a position is kept in a
+ * transposition table, and every later node of the same position uses its statistics, so a position that is reached
+ * by different orders of actions gathers the visits of all of them. The nodes keep their own children.
+ * Besides its own statistics, every node has all-moves-as-first statistics: the values of all iterations in which its
+ * action was played by the same player somewhere below its parent, see {@link AmafTrace}.
+ */
+public class NodeArena {
+  /**
+   * The index of the root of every tree
+   */
+  public static final int ROOT = 0;
+  /**
+   * Returned instead of an index if there is no such node
+   */
+  public static final int NONE = -1;
+
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private static final int UNEXPANDED = 0;
+  private static final int CLAIMED = 1;
+  private static final int EXPANDED = 2;
+
+  /**
+   * The estimated memory of a single node in the arrays of a chunk, without the states it references
+   */
+  private static final int NODE_BYTES = 85;
+  /**
+   * The estimated memory of an entry of the transposition table
+   */
+  private static final int TRANSPOSITION_BYTES = 64;
+
+  private volatile Chunk[] chunks = new Chunk[0];
+  private final AtomicInteger size = new AtomicInteger(0);
+  /**
+   * The amount of states this tree holds, the state of the root and the cached resulting states of nodes with an action
+   */
+  private final AtomicInteger stateCount = new AtomicInteger(1);
+  /**
+   * The first node of every hashed position
+   */
+  private final ConcurrentHashMap<Long, Integer> transpositions = new ConcurrentHashMap<>();
+  /**
+   * The amount of action records of the state the tree was first created with. Copies of the tree keep it, so the
+   * cards of all hashed positions are relative to the same record, see {@link NodeArena#getHashedRecord()}.
+   */
+  private int hashedRecord;
+  /**
+   * Every how many plies a node caches its resulting state, see {@link NodeArena#isCheckpoint(int)}
+   */
+  private final int checkpointInterval;
+  /**
+   * The codec the actions of the nodes are encoded with, shared by all trees of an agent
+   */
+  private final ActionCodec codec;
+
+  /**
+   * A fixed amount of consecutive nodes
+   */
+  private static class Chunk {
+    private final AtomicLongArray totals = new AtomicLongArray(CHUNK_SIZE);
+    private final AtomicIntegerArray visits = new AtomicIntegerArray(CHUNK_SIZE);
+    private final AtomicIntegerArray virtualLosses = new AtomicIntegerArray(CHUNK_SIZE);
+    private final AtomicLongArray amafTotals = new AtomicLongArray(CHUNK_SIZE);
+    private final AtomicIntegerArray amafVisits = new AtomicIntegerArray(CHUNK_SIZE);
+    private final AtomicIntegerArray expansions = new AtomicIntegerArray(CHUNK_SIZE);
+    private final int[] parents = new int[CHUNK_SIZE];
+    private final int[] firstChildren = new int[CHUNK_SIZE];
+    private final int[] childCounts = new int[CHUNK_SIZE];
+    private final int[] depths = new int[CHUNK_SIZE];
+    private final long[] hashes = new long[CHUNK_SIZE];
+    /**
+     * The node whose statistics a node uses, the node itself unless it is a transposition
+     */
+    private final int[] statNodes = new int[CHUNK_SIZE];
+    /**
+     * The player who chooses between the children of a node, negative if unknown or if nobody chooses (dice)
+     */
+    private final int[] movers = new int[CHUNK_SIZE];
+    /**
+     * If the children of a node are sorted by a prior and only the best of them can be selected, see
+     * {@link UCBLogic#getSelectableChildCount(NodeArena, int)}
+     */
+    private final boolean[] widened = new boolean[CHUNK_SIZE];
+    private final double[] priors = new double[CHUNK_SIZE];
+    private final long[] actions = new long[CHUNK_SIZE];
+    private final AtomicReferenceArray<Risk> states = new AtomicReferenceArray<>(CHUNK_SIZE);
+    private final AtomicReferenceArray<Risk> resultingStates = new AtomicReferenceArray<>(CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a new tree that only consists of a root without an action
+   * @param state the game state the tree starts from
+   * @param codec the codec the actions of the nodes are encoded with
+   */
+  public NodeArena(Risk state, ActionCodec codec) {
+    this(state, codec, SearchSettings.CHECKPOINT_INTERVAL);
+  }
+
+  /**
+   * Creates a new tree that only consists of a root without an action and caches states at the given interval
+   * @param state the game state the tree starts from
+   * @param codec the codec the actions of the nodes are encoded with
+   * @param checkpointInterval every how many plies a node caches its resulting state, at least 1
+   */
+  public NodeArena(Risk state, ActionCodec codec, int checkpointInterval) {
+    if(checkpointInterval < 1)
+      throw new IllegalArgumentException("The checkpoint interval has to be at least 1, not " + checkpointInterval);
+    this.checkpointInterval = checkpointInterval;
+    this.codec = codec;
+    int root = allocate(1);
+    Chunk chunk = chunk(root);
+    chunk.parents[root & CHUNK_MASK] = NONE;
+    chunk.statNodes[root & CHUNK_MASK] = root;
+    chunk.movers[root & CHUNK_MASK] = NONE;
+    chunk.actions[root & CHUNK_MASK] = ActionCodec.NONE;
+    chunk.states.set(root & CHUNK_MASK, state);
+    hashedRecord = state.getActionRecords().size();
+  }
+
+  private int allocate(int count) {
+    int first = size.getAndAdd(count);
+    int needed = (first + count + CHUNK_MASK) >>> CHUNK_BITS;
+    if(chunks.length < needed) {
+      synchronized(this) {
+        Chunk[] current = chunks;
+        if(current.length < needed) {
+          Chunk[] grown = new Chunk[Math.max(needed, current.length * 2)];
+          System.arraycopy(current, 0, grown, 0, current.length);
+          for(int i = current.length; i < grown.length; i++) {
+            grown[i] = new Chunk();
+          }
+          chunks = grown;
+        }
+      }
+    }
+    return first;
+  }
+
+  private Chunk chunk(int node) {
+    return chunks[node >>> CHUNK_BITS];
+  }
+
+  /**
+   * The amount of nodes in this tree
+   * @return the amount of nodes
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * The estimated amount of memory this tree holds, including its states.
+   * The size of a state is estimated with {@link SearchSettings#ESTIMATED_STATE_BYTES}.
+   * @return the estimated memory in bytes
+   */
+  public long getEstimatedBytes() {
+    return (long) size() * NODE_BYTES + (long) stateCount.get() * SearchSettings.ESTIMATED_STATE_BYTES
+            + (long) transpositions.size() * TRANSPOSITION_BYTES;
+  }
+
+  /**
+   * Tries to become the only worker that expands the given node
+   * @param node the node to expand
+   * @return true if the calling worker has to expand the node, false if another worker already does
+   */
+  public boolean tryClaimExpansion(int node) {
+    return chunk(node).expansions.compareAndSet(node & CHUNK_MASK, UNEXPANDED, CLAIMED);
+  }
+
+  /**
+   * Creates the children of the given node for the given actions and publishes them all at once.
+   * Other workers either see no children or all of them.
+   * @param node the node to attach the children to
+   * @param actions the codes of the actions of the children, see {@link ActionCodec}
+   * @param count the amount of actions to use from the array
+   */
+  public void setChildren(int node, long[] actions, int count) {
+    setChildren(node, actions, null, count);
+  }
+
+  /**
+   * Creates the children of the given node for the given actions and publishes them all at once.
+   * Other workers either see no children or all of them. A child whose position was reached before uses the statistics
+   * of the first node of that position.
+   * @param node the node to attach the children to
+   * @param actions the codes of the actions of the children, see {@link ActionCodec}
+   * @param hashes the hashes of the positions after the actions, 0 for positions that should not be shared.
+   *               null if no child should be shared.
+   * @param count the amount of actions to use from the array
+   */
+  public void setChildren(int node, long[] actions, long[] hashes, int count) {
+    setChildren(node, actions, hashes, null, count);
+  }
+
+  /**
+   * Creates the children of the given node like {@link NodeArena#setChildren(int, long[], long[], int)} and gives
+   * every child a prior, see {@link NodeArena#getPrior(int)}
+   * @param node the node to attach the children to
+   * @param actions the codes of the actions of the children, see {@link ActionCodec}
+   * @param hashes the hashes of the positions after the actions, null if no child should be shared
+   * @param priors the priors of the children between 0 and 1, null if the children have no priors
+   * @param count the amount of actions to use from the array
+   */
+  public void setChildren(int node, long[] actions, long[] hashes, double[] priors, int count) {
+    int first = count == 0 ? NONE : allocate(count);
+    int depth = getDepth(node) + 1;
+    for(int i = 0; i < count; i++) {
+      int child = first + i;
+      Chunk chunk = chunk(child);
+      chunk.parents[child & CHUNK_MASK] = node;
+      chunk.actions[child & CHUNK_MASK] = actions[i];
+      chunk.depths[child & CHUNK_MASK] = depth;
+      chunk.movers[child & CHUNK_MASK] = NONE;
+      chunk.priors[child & CHUNK_MASK] = priors != null ? priors[i] : Double.NaN;
+      chunk.hashes[child & CHUNK_MASK] = hashes != null ? hashes[i] : 0L;
+      chunk.statNodes[child & CHUNK_MASK] = hashes != null && hashes[i] != 0L
+              ? transpositions.computeIfAbsent(hashes[i], hash -> child) : child;
+    }
+    Chunk chunk = chunk(node);
+    chunk.firstChildren[node & CHUNK_MASK] = first;
+    chunk.childCounts[node & CHUNK_MASK] = count;
+    chunk.expansions.set(node & CHUNK_MASK, EXPANDED);
+  }
+
+  /**
+   * If the children of the given node have been published by an expansion
+   * @param node the node to check
+   * @return true if the node has been expanded, false if not
+   */
+  public boolean isExpanded(int node) {
+    return chunk(node).expansions.get(node & CHUNK_MASK) == EXPANDED;
+  }
+
+  /**
+   * The first child of the given node. The other children follow it directly.
+   * Only valid once {@link NodeArena#isExpanded(int)} returned true for the node.
+   * @param node the node to get the child of
+   * @return the index of the first child, {@link NodeArena#NONE} if there are no children
+   */
+  public int getFirstChild(int node) {
+    return chunk(node).firstChildren[node & CHUNK_MASK];
+  }
+
+  /**
+   * The amount of children of the given node, 0 if it has not been expanded yet
+   * @param node the node to get the amount of children of
+   * @return the amount of children
+   */
+  public int getChildCount(int node) {
+    return isExpanded(node) ? chunk(node).childCounts[node & CHUNK_MASK] : 0;
+  }
+
+  /**
+   * The parent of the given node
+   * @param node the node to get the parent of
+   * @return the index of the parent, {@link NodeArena#NONE} for the root
+   */
+  public int getParent(int node) {
+    return chunk(node).parents[node & CHUNK_MASK];
+  }
+
+  /**
+   * The distance of the given node to the root
+   * @param node the node to get the depth of
+   * @return the depth, 0 for the root
+   */
+  public int getDepth(int node) {
+    return chunk(node).depths[node & CHUNK_MASK];
+  }
+
+  /**
+   * The player who chooses between the children of the given node
+   * @param node the node to get the player of
+   * @return the id of the player, negative if it is unknown or if the children are outcomes of dice
+   */
+  public int getMover(int node) {
+    return chunk(node).movers[node & CHUNK_MASK];
+  }
+
+  /**
+   * Set the player who chooses between the children of the given node. Has to be called before the node is expanded.
+   * @param node the node to set the player of
+   * @param player the id of the player, negative if the children are outcomes of dice
+   */
+  public void setMover(int node, int player) {
+    chunk(node).movers[node & CHUNK_MASK] = player;
+  }
+
+  /**
+   * If the children of the given node are sorted by a prior and uncovered progressively, see
+   * {@link UCBLogic#getSelectableChildCount(NodeArena, int)}
+   * @param node the node to check
+   * @return true if the node widens progressively, false if all children can be selected right away
+   */
+  public boolean isWidened(int node) {
+    return chunk(node).widened[node & CHUNK_MASK];
+  }
+
+  /**
+   * Set if the children of the given node are uncovered progressively. Has to be called before the node is expanded.
+   * @param node the node to set the flag of
+   * @param widened true if the children are sorted by a prior and should be uncovered progressively
+   */
+  public void setWidened(int node, boolean widened) {
+    chunk(node).widened[node & CHUNK_MASK] = widened;
+  }
+
+  /**
+   * How promising the action of the given node looked when it was created, compared to its siblings. For the outcomes
+   * of dice it is the probability of the outcome, see {@link UCBLogic#expandOutcomes}.
+   * @param node the node to get the prior of
+   * @return the prior between 0 and 1, {@link Double#NaN} if the node has no prior
+   */
+  public double getPrior(int node) {
+    return chunk(node).priors[node & CHUNK_MASK];
+  }
+
+  /**
+   * The hash of the position after the action of the given node
+   * @param node the node to get the hash of
+   * @return the hash, 0 if the node is not shared with transpositions
+   */
+  public long getHash(int node) {
+    return chunk(node).hashes[node & CHUNK_MASK];
+  }
+
+  /**
+   * The first action record whose changes of the cards are part of the hashes of this tree. The cards before it are
+   * the same for all positions of the tree, so they are left out,
+   * see {@link risk.agent.mc.sim.SimBoard#loadCardChanges(Risk, int)}.
+   * @return the index of the record
+   */
+  public int getHashedRecord() {
+    return hashedRecord;
+  }
+
+  /**
+   * If the given node uses the statistics of another node that reached the same position first
+   * @param node the node to check
+   * @return true if the node is a transposition of another node, false if not
+   */
+  public boolean isTransposition(int node) {
+    return statNode(node) != node;
+  }
+
+  private int statNode(int node) {
+    return chunk(node).statNodes[node & CHUNK_MASK];
+  }
+
+  /**
+   * If the resulting state of the given node is cached, see {@link NodeArena#NodeArena(Risk, ActionCodec, int)}
+   * @param node the node to check
+   * @return true if the node is the root or its depth is a multiple of the interval, false if not
+   */
+  public boolean isCheckpoint(int node) {
+    return getDepth(node) % checkpointInterval == 0;
+  }
+
+  /**
+   * The codec the actions of the nodes of this tree are encoded with
+   * @return the codec
+   */
+  public ActionCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * The code of the action of the given node, see {@link ActionCodec}
+   * @param node the node to get the action of
+   * @return the code of the action, {@link ActionCodec#NONE} for the root
+   */
+  public long getAction(int node) {
+    return chunk(node).actions[node & CHUNK_MASK];
+  }
+
+  /**
+   * If the given node is associated with an action
+   * @param node the node to check
+   * @return true if the node has an action, false if it is the root
+   */
+  public boolean hasAction(int node) {
+    return getAction(node) != ActionCodec.NONE;
+  }
+
+  /**
+   * The {@link RiskAction} of the given node. It is looked up from the code of the action, so this should only be used
+   * when the action is needed by the engine.
+   * @param node the node to get the action of
+   * @return the action of the node, null for the root and macro actions, see {@link ActionCodec#isMacro(long)}
+   */
+  public RiskAction getRiskAction(int node) {
+    return codec.decode(getAction(node));
+  }
+
+  /**
+   * The total value of the given node
+   * @param node the node to get the total of
+   * @return the total value as a double
+   */
+  public double getTotal(int node) {
+    int stat = statNode(node);
+    return Double.longBitsToDouble(chunk(stat).totals.get(stat & CHUNK_MASK));
+  }
+
+  /**
+   * Set the total value of the given node
+   * @param node the node to set the total of
+   * @param total the total to be set
+   */
+  public void setTotal(int node, double total) {
+    int stat = statNode(node);
+    chunk(stat).totals.set(stat & CHUNK_MASK, Double.doubleToLongBits(total));
+  }
+
+  /**
+   * Atomically adds the given value to the total value of the given node
+   * @param node the node to add the value to
+   * @param value the value to add
+   */
+  public void addToTotal(int node, double value) {
+    int stat = statNode(node);
+    AtomicLongArray totals = chunk(stat).totals;
+    int index = stat & CHUNK_MASK;
+    long current;
+    do {
+      current = totals.get(index);
+    } while(!totals.compareAndSet(index, current, Double.doubleToLongBits(Double.longBitsToDouble(current) + value)));
+  }
+
+  /**
+   * The visits the given node has received during MCTS-Operations
+   * @param node the node to get the visits of
+   * @return the visits as an integer
+   */
+  public int getVisits(int node) {
+    int stat = statNode(node);
+    return chunk(stat).visits.get(stat & CHUNK_MASK);
+  }
+
+  /**
+   * Set the visits of the given node
+   * @param node the node to set the visits of
+   * @param visits the visits to be set
+   */
+  public void setVisits(int node, int visits) {
+    int stat = statNode(node);
+    chunk(stat).visits.set(stat & CHUNK_MASK, visits);
+  }
+
+  /**
+   * Atomically adds the given amount of visits to the given node
+   * @param node the node to add the visits to
+   * @param count the amount of visits to add
+   */
+  public void addVisits(int node, int count) {
+    int stat = statNode(node);
+    chunk(stat).visits.addAndGet(stat & CHUNK_MASK, count);
+  }
+
+  /**
+   * The amount of workers that currently passed the given node during selection and have not backpropagated yet
+   * @param node the node to check
+   * @return the amount of pending virtual losses
+   */
+  public int getVirtualLosses(int node) {
+    int stat = statNode(node);
+    return chunk(stat).virtualLosses.get(stat & CHUNK_MASK);
+  }
+
+  /**
+   * Marks that a worker passed the given node during selection
+   * @param node the selected node
+   */
+  public void addVirtualLoss(int node) {
+    int stat = statNode(node);
+    chunk(stat).virtualLosses.incrementAndGet(stat & CHUNK_MASK);
+  }
+
+  /**
+   * Marks that a worker that passed the given node during selection has finished its iteration
+   * @param node the selected node
+   */
+  public void removeVirtualLoss(int node) {
+    int stat = statNode(node);
+    chunk(stat).virtualLosses.decrementAndGet(stat & CHUNK_MASK);
+  }
+
+  /**
+   * The sum of the values of all iterations in which the action of the given node was played below its parent
+   * @param node the node to get the total of
+   * @return the all-moves-as-first total
+   */
+  public double getAmafTotal(int node) {
+    return Double.longBitsToDouble(chunk(node).amafTotals.get(node & CHUNK_MASK));
+  }
+
+  /**
+   * The amount of iterations in which the action of the given node was played below its parent
+   * @param node the node to get the visits of
+   * @return the all-moves-as-first visits
+   */
+  public int getAmafVisits(int node) {
+    return chunk(node).amafVisits.get(node & CHUNK_MASK);
+  }
+
+  /**
+   * Atomically adds the value of an iteration to the all-moves-as-first statistics of the given node
+   * @param node the node whose action was played
+   * @param value the value of the iteration
+   */
+  public void addAmaf(int node, double value) {
+    Chunk chunk = chunk(node);
+    int index = node & CHUNK_MASK;
+    long current;
+    do {
+      current = chunk.amafTotals.get(index);
+    } while(!chunk.amafTotals.compareAndSet(index, current,
+            Double.doubleToLongBits(Double.longBitsToDouble(current) + value)));
+    chunk.amafVisits.incrementAndGet(index);
+  }
+
+  private void setAmaf(int node, double total, int visits) {
+    chunk(node).amafTotals.set(node & CHUNK_MASK, Double.doubleToLongBits(total));
+    chunk(node).amafVisits.set(node & CHUNK_MASK, visits);
+  }
+
+  /**
+   * The state of the game before the action of the given node is executed. Nodes without a state share the resulting
+   * state of their parent, which is built the first time it is needed and cached from then on if the parent is a
+   * checkpoint. Otherwise it is replayed from the nearest checkpoint above on every call.
+   * @param node the node to get the state of
+   * @return the state of the node
+   */
+  public Risk getState(int node) {
+    Chunk chunk = chunk(node);
+    Risk current = chunk.states.get(node & CHUNK_MASK);
+    int parent = chunk.parents[node & CHUNK_MASK];
+    if(current == null && parent != NONE) {
+      current = getResultingState(parent);
+      if(isCheckpoint(parent))
+        chunk.states.set(node & CHUNK_MASK, current);
+    }
+    return current;
+  }
+
+  /**
+   * Set the state of the game before the action of the given node
+   * @param node the node to set the state of
+   * @param state the state, null if it should be taken from the parent again
+   */
+  public void setState(int node, Risk state) {
+    chunk(node).states.set(node & CHUNK_MASK, state);
+  }
+
+  /**
+   * The state of the game after the action of the given node is executed. For checkpoints it is built the first time it
+   * is needed and cached from then on. Workers that need it at the same time may both build it, but all of them get the
+   * one that was cached first. For all other nodes it is built again on every call.
+   * The parts of a macro action are executed one after another.
+   * @param node the node to get the resulting state of
+   * @return the state after the action of the node or the state of the node if it has no action (root)
+   */
+  public Risk getResultingState(int node) {
+    Chunk chunk = chunk(node);
+    Risk current = chunk.resultingStates.get(node & CHUNK_MASK);
+    if(current == null) {
+      if(!hasAction(node)) {
+        current = getState(node);
+        chunk.resultingStates.set(node & CHUNK_MASK, current);
+      } else {
+        Risk built = getState(node);
+        long action = getAction(node);
+        for(int i = 0; i < codec.partCount(action); i++) {
+          built = (Risk) built.doAction(codec.decode(codec.part(action, i)));
+        }
+        if(!isCheckpoint(node))
+          return built;
+        if(chunk.resultingStates.compareAndSet(node & CHUNK_MASK, null, built)) {
+          stateCount.incrementAndGet();
+          current = built;
+        } else {
+          current = chunk.resultingStates.get(node & CHUNK_MASK);
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Copies the subtree below the given node into a new tree, where the node becomes the root. The new root keeps the
+   * visits, the total and all descendants of the node, but gets the given state. Its children take their state from
+   * the new root again, deeper nodes keep their cached states.
+   * @param node the node that becomes the new root
+   * @param state the game state the new root represents
+   * @return a new tree
+   */
+  public NodeArena copySubtree(int node, Risk state) {
+    return copy(node, state, false);
+  }
+
+  /**
+   * Copies the subtree below the given node into a new tree, where the node becomes the root
+   * @param node the node that becomes the new root
+   * @param state the game state the new root represents
+   * @param sameState if the state is the state of the node, so its children can keep their cached states
+   * @return a new tree
+   */
+  private NodeArena copy(int node, Risk state, boolean sameState) {
+    NodeArena copy = new NodeArena(state, codec, checkpointInterval);
+    copy.hashedRecord = hashedRecord;
+    copy.setVisits(ROOT, getVisits(node));
+    copy.setTotal(ROOT, getTotal(node));
+    ArrayDeque<int[]> pending = new ArrayDeque<>();
+    pending.add(new int[]{node, ROOT});
+    long[] actions = new long[16];
+    long[] hashes = new long[16];
+    double[] priors = new double[16];
+    while(!pending.isEmpty()) {
+      int[] pair = pending.poll();
+      int source = pair[0];
+      int target = pair[1];
+      if(!isExpanded(source))
+        continue;
+      copy.setMover(target, getMover(source));
+      copy.setWidened(target, isWidened(source));
+      int count = getChildCount(source);
+      int first = getFirstChild(source);
+      if(actions.length < count) {
+        actions = new long[count];
+        hashes = new long[count];
+        priors = new double[count];
+      }
+      for(int i = 0; i < count; i++) {
+        actions[i] = getAction(first + i);
+        hashes[i] = getHash(first + i);
+        priors[i] = getPrior(first + i);
+      }
+      copy.setChildren(target, actions, hashes, priors, count);
+      int copyFirst = copy.getFirstChild(target);
+      for(int i = 0; i < count; i++) {
+        int child = first + i;
+        int copyChild = copyFirst + i;
+        copy.setVisits(copyChild, getVisits(child));
+        copy.setTotal(copyChild, getTotal(child));
+        copy.setAmaf(copyChild, getAmafTotal(child), getAmafVisits(child));
+        if(sameState || source != node) {
+          //the depths change with a new root, states are only kept where the copy has its checkpoints
+          Risk resultingState = copy.isCheckpoint(copyChild)
+                  ? chunk(child).resultingStates.get(child & CHUNK_MASK) : null;
+          copy.setState(copyChild, copy.isCheckpoint(target) ? chunk(child).states.get(child & CHUNK_MASK) : null);
+          copy.chunk(copyChild).resultingStates.set(copyChild & CHUNK_MASK, resultingState);
+          if(resultingState != null)
+            copy.stateCount.incrementAndGet();
+        }
+        pending.add(new int[]{child, copyChild});
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Collapses the least visited subtrees until the tree fits into the given fraction of the budget, see
+   * {@link SearchSettings#EVICTION_TARGET}. A collapsed node becomes a leaf again, it keeps its visits and its total
+   * but loses its children and its cached resulting state, and is expanded again once it gets selected.
+   * Afterwards the remaining nodes are copied into new arrays, so the memory of the evicted nodes can be reclaimed and
+   * the indices of nodes change. Must only be called while no worker searches this tree.
+   * @param maxNodes the maximum amount of nodes of this tree
+   * @param maxBytes the maximum amount of memory this tree should hold, see {@link NodeArena#getEstimatedBytes()}
+   * @return the amount of subtrees that were collapsed
+   */
+  public int evict(int maxNodes, long maxBytes) {
+    int count = size();
+    long targetNodes = (long) (maxNodes * SearchSettings.EVICTION_TARGET);
+    long targetBytes = (long) (maxBytes * SearchSettings.EVICTION_TARGET);
+    //children are always stored behind their parent, so a backwards pass sums up every subtree
+    int[] subtreeNodes = new int[count];
+    long[] subtreeBytes = new long[count];
+    long[] candidates = new long[count];
+    int candidateCount = 0;
+    for(int node = count - 1; node >= 0; node--) {
+      subtreeNodes[node] += 1;
+      subtreeBytes[node] += NODE_BYTES + (hasCachedState(node) ? SearchSettings.ESTIMATED_STATE_BYTES : 0);
+      if(node != ROOT) {
+        subtreeNodes[getParent(node)] += subtreeNodes[node];
+        subtreeBytes[getParent(node)] += subtreeBytes[node];
+        if(isExpanded(node))
+          candidates[candidateCount++] = (long) getVisits(node) << 32 | node;
+      }
+    }
+    Arrays.sort(candidates, 0, candidateCount);
+    boolean[] collapsed = new boolean[count];
+    int evicted = 0;
+    for(int i = 0; i < candidateCount && (subtreeNodes[ROOT] > targetNodes || subtreeBytes[ROOT] > targetBytes); i++) {
+      int node = (int) candidates[i];
+      if(isBelowCollapsed(node, collapsed))
+        continue;
+      int removedNodes = subtreeNodes[node] - 1;
+      long removedBytes = subtreeBytes[node] - NODE_BYTES;
+      for(int ancestor = node; ancestor != NONE; ancestor = getParent(ancestor)) {
+        subtreeNodes[ancestor] -= removedNodes;
+        subtreeBytes[ancestor] -= removedBytes;
+      }
+      Chunk chunk = chunk(node);
+      chunk.firstChildren[node & CHUNK_MASK] = NONE;
+      chunk.childCounts[node & CHUNK_MASK] = 0;
+      chunk.resultingStates.set(node & CHUNK_MASK, null);
+      chunk.expansions.set(node & CHUNK_MASK, UNEXPANDED);
+      collapsed[node] = true;
+      evicted++;
+    }
+    if(evicted > 0) {
+      NodeArena compacted = copy(ROOT, getState(ROOT), true);
+      chunks = compacted.chunks;
+      size.set(compacted.size());
+      stateCount.set(compacted.stateCount.get());
+      transpositions.clear();
+      transpositions.putAll(compacted.transpositions);
+    }
+    return evicted;
+  }
+
+  private boolean hasCachedState(int node) {
+    return node == ROOT || (hasAction(node) && chunk(node).resultingStates.get(node & CHUNK_MASK) != null);
+  }
+
+  private boolean isBelowCollapsed(int node, boolean[] collapsed) {
+    for(int ancestor = getParent(node); ancestor != NONE; ancestor = getParent(ancestor)) {
+      if(collapsed[ancestor])
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Creates an object view of the given node, only meant for event-logging
+   * @param node the node to view
+   * @return a {@link UCBNode} that reads from this tree
+   */
+  public UCBNode view(int node) {
+    return new UCBNode(this, node, null);
+  }
+}
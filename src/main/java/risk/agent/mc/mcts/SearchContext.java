@@ -0,0 +1,90 @@
+package risk.agent.mc.mcts;
+
+import risk.agent.mc.sim.SimBoard;
+
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Holds everything a single search worker needs during MCTS-Operations.
+ * Every worker gets its own context, so multiple workers can search at the same time without sharing mutable state.
+ * The context also keeps the {@link SimBoard} the worker simulates on, so it is reused for every simulation of the
+ * worker, and the {@link AmafTrace} that collects the moves of an iteration.
+ */
+public class SearchContext {
+  private final Random random;
+  private BooleanSupplier stopCondition;
+  private int proportion = 1;
+  private SimBoard board = null;
+  private final AmafTrace amafTrace = new AmafTrace();
+
+  /**
+   * Creates a new SearchContext
+   * @param random the random number generator this worker should use exclusively
+   * @param stopCondition returns true as soon as the worker should stop searching
+   */
+  public SearchContext(Random random, BooleanSupplier stopCondition) {
+    this.random = random;
+    this.stopCondition = stopCondition;
+  }
+
+  /**
+   * The random number generator of this worker
+   * @return the {@link Random} of this worker
+   */
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * If the worker should stop its computations
+   * @return true if the worker should stop, false if not
+   */
+  public boolean shouldStop() {
+    return stopCondition.getAsBoolean();
+  }
+
+  /**
+   * Set the condition that tells the worker to stop, used when a context is reused for another search
+   * @param stopCondition returns true as soon as the worker should stop searching
+   */
+  public void setStopCondition(BooleanSupplier stopCondition) {
+    this.stopCondition = stopCondition;
+  }
+
+  /**
+   * The amount of children of the node that was expanded last by this worker.
+   * Used to limit the depth of simulations.
+   * @return the proportion as an integer, at least 1
+   */
+  public int getProportion() {
+    return proportion;
+  }
+
+  /**
+   * Set the amount of children of the node that was expanded last by this worker
+   * @param proportion the amount of children, values below 1 are treated as 1
+   */
+  public void setProportion(int proportion) {
+    this.proportion = Math.max(1, proportion);
+  }
+
+  /**
+   * The board this worker runs its simulations on. It is created from the given board the first time it is needed.
+   * @param prototype a board with the structure of the current game
+   * @return the {@link SimBoard} of this worker
+   */
+  public SimBoard getBoard(SimBoard prototype) {
+    if(board == null)
+      board = prototype.copy();
+    return board;
+  }
+
+  /**
+   * The trace this worker collects the moves of an iteration in
+   * @return the {@link AmafTrace} of this worker
+   */
+  public AmafTrace getAmafTrace() {
+    return amafTrace;
+  }
+}
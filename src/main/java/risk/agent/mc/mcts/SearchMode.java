@@ -0,0 +1,24 @@
+package risk.agent.mc.mcts;
+
+/**
+ * The different ways the MCTS-Search can be run.
+ */
+public enum SearchMode {
+  /**
+   * One tree searched by a single thread
+   */
+  SEQUENTIAL,
+  /**
+   * One independent tree per worker thread. The statistics of the root children are merged by action at the end.
+   */
+  ROOT_PARALLEL,
+  /**
+   * One shared tree searched by all worker threads. Virtual losses spread the workers over the siblings.
+   */
+  TREE_PARALLEL,
+  /**
+   * One tree searched by a single thread. Every selected node is simulated several times at once on all cores and the
+   * mean of the simulations is backpropagated in a single pass.
+   */
+  LEAF_PARALLEL
+}
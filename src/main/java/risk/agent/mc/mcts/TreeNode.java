@@ -3,50 +3,88 @@ package risk.agent.mc.mcts;
 import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import risk.agent.mc.data.ActionCodec;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Serves as a template for different types of nodes and lets them act as tree nodes for an MCTS-Tree
+ * Serves as a template for different types of nodes and lets them act as object views of a node of an MCTS-Tree
+ * that is stored in a {@link NodeArena}. The views are only meant for event-logging, the search works on the arena.
  * @param <T> the class to act as a template for
  */
-public class TreeNode<T extends TreeNode<T>> {
+public abstract class TreeNode<T extends TreeNode<T>> {
 
   @JsonIgnore
-  protected final T parent;
-  protected List<T> children = new ArrayList<>();
-  protected final RiskAction riskAction;
+  protected final NodeArena tree;
+  @JsonIgnore
+  protected final int index;
   @JsonIgnore
-  protected final Risk state;
+  protected final T parent;
+  protected List<T> children = null;
   protected boolean ignore = false;
 
 
   /**
    * Creates a new TreeNode
-   * @param parent The parent of the tree node
-   * @param riskAction the action this node represents
-   * @param state the state of the game before the action of this node is executed
+   * @param tree the tree the node is stored in
+   * @param index the index of the node in the tree
+   * @param parent the view of the parent of the node, null if it is the first node that is viewed
    */
-  public TreeNode(T parent, RiskAction riskAction, Risk state) {
+  public TreeNode(NodeArena tree, int index, T parent) {
+    this.tree = tree;
+    this.index = index;
     this.parent = parent;
-    this.riskAction = riskAction;
-    this.state = state;
   }
 
   /**
-   * Add a child node to this node. There may be duplicates
-   * @param child the child to be added
+   * Creates the view of a child of this node
+   * @param index the index of the child in the tree
+   * @return the view of the child
+   */
+  protected abstract T createChild(int index);
+
+  /**
+   * The tree the node of this view is stored in
+   * @return the {@link NodeArena} of this node
+   */
+  @JsonIgnore
+  public NodeArena getTree() {
+    return tree;
+  }
+
+  /**
+   * The index of the node of this view in its tree
+   * @return the index of this node
    */
-  public void addChild(T child) {
-    children.add(child);
+  @JsonIgnore
+  public int getIndex() {
+    return index;
   }
 
   /**
-   * All children of this node
-   * @return an Arraylist of this node's children
+   * If the children of this node have been published by an expansion
+   * @return true if this node has been expanded, false if not
+   */
+  @JsonIgnore
+  public boolean isExpanded() {
+    return tree.isExpanded(index);
+  }
+
+  /**
+   * All children of this node. Their views are created the first time they are needed and kept from then on.
+   * @return a list of the views of this node's children
    */
   public List<T> getChildren() {
+    if(children == null) {
+      int count = tree.getChildCount(index);
+      int first = tree.getFirstChild(index);
+      List<T> views = new ArrayList<>(count);
+      for(int i = 0; i < count; i++) {
+        views.add(createChild(first + i));
+      }
+      children = views;
+    }
     return children;
   }
 
@@ -60,7 +98,7 @@ public class TreeNode<T extends TreeNode<T>> {
 
   /**
    * The parent of this node
-   * @return the parent of this node. Null if no parent exists.
+   * @return the view of the parent of this node. Null if it is the first node that is viewed.
    */
   @JsonIgnore
   public T getParent() {
@@ -72,15 +110,25 @@ public class TreeNode<T extends TreeNode<T>> {
    * @return this node's {@link RiskAction}, null if there is none associated
    */
   public RiskAction getRiskAction() {
-    return riskAction;
+    return tree.getRiskAction(index);
   }
 
   /**
-   * The state of the game before this node's action is executed
-   * @return this node's state or null if there is none associated
+   * The code of the action this node is associated with, see {@link ActionCodec}
+   * @return this node's action code, {@link ActionCodec#NONE} if there is none associated
    */
+  @JsonIgnore
+  public long getAction() {
+    return tree.getAction(index);
+  }
+
+  /**
+   * The state of the game before this node's action is executed, see {@link NodeArena#getState(int)}
+   * @return this node's state
+   */
+  @JsonIgnore
   public Risk getState() {
-    return state;
+    return tree.getState(index);
   }
 
   /**
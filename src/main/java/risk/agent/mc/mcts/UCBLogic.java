@@ -2,11 +2,21 @@ package risk.agent.mc.mcts;
 
 import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import risk.agent.mc.data.ActionCodec;
+import risk.agent.mc.data.SearchSettings;
+import risk.agent.mc.sim.BattleOdds;
+import risk.agent.mc.sim.SimBoard;
+import risk.agent.mc.sim.SimMove;
 
-import java.util.Set;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
 
 /**
- * Houses the logic for UCB calculation and the backpropagation, expansion and selection phases of MCTS
+ * Houses the logic for UCB calculation and the backpropagation, expansion and selection phases of MCTS.
+ * The trees are stored in a {@link NodeArena}, nodes are given by their index in it.
  */
 public class UCBLogic {
 
@@ -16,65 +26,499 @@ public class UCBLogic {
   private static double EXPLORATION_FACTOR = 8000;
 
   /**
-   * Calculates the UCB value of the given node
-   * @param node the {@link UCBNode} to calculate the UCB value for
+   * Calculates the UCB value of the given node.
+   * Every pending virtual loss of the node counts as an additional visit that lost {@link SearchSettings#VIRTUAL_LOSS}.
+   * The pending virtual losses of the parent count as visits of the parent as well, so a parent whose first simulations
+   * are still running does not make the exploration term undefined.
+   * If {@link SearchSettings#RAVE} is enabled, the total is blended with the all-moves-as-first statistics of the node,
+   * see {@link UCBLogic#blendWithAmaf(NodeArena, int)}. Nodes with a prior are rated differently, see
+   * {@link UCBLogic#calculateUCBWithPrior(NodeArena, int, double)}.
+   * @param tree the tree the node is stored in
+   * @param node the node to calculate the UCB value for, it must not be the root
    * @return the UCB value of the given node
    */
-  public static double calculateUCB(UCBNode node) {
-    if(node.getVisits() == 0)
+  public static double calculateUCB(NodeArena tree, int node) {
+    double prior = tree.getPrior(node);
+    if(!Double.isNaN(prior))
+      return calculateUCBWithPrior(tree, node, prior);
+    int virtualLosses = tree.getVirtualLosses(node);
+    int visits = tree.getVisits(node) + virtualLosses;
+    if(visits == 0)
       return Double.MAX_VALUE;
 
-    return node.getTotal() + EXPLORATION_FACTOR
-            * Math.sqrt(Math.log(node.getParent().getVisits()) / node.getVisits());
+    int parent = tree.getParent(node);
+    int parentVisits = tree.getVisits(parent) + tree.getVirtualLosses(parent);
+    double total = SearchSettings.RAVE ? blendWithAmaf(tree, node) : tree.getTotal(node);
+    return total - virtualLosses * SearchSettings.VIRTUAL_LOSS + EXPLORATION_FACTOR
+            * Math.sqrt(Math.log(Math.max(1, parentVisits)) / visits);
+  }
+
+  /**
+   * Calculates the UCB value of a node that has a prior (see {@link NodeArena#getPrior(int)}). Unvisited nodes are not
+   * selected first, instead every node gets a bias of {@link SearchSettings#PRIOR_WEIGHT} times its prior that fades
+   * with its visits, so promising actions are simulated before their siblings and weak ones may never be.
+   * @param tree the tree the node is stored in
+   * @param node the node to calculate the UCB value for, it must not be the root
+   * @param prior the prior of the node
+   * @return the UCB value of the given node
+   */
+  private static double calculateUCBWithPrior(NodeArena tree, int node, double prior) {
+    int virtualLosses = tree.getVirtualLosses(node);
+    int visits = tree.getVisits(node) + virtualLosses;
+    double total = SearchSettings.RAVE ? blendWithAmaf(tree, node) : tree.getTotal(node);
+    return total - virtualLosses * SearchSettings.VIRTUAL_LOSS + EXPLORATION_FACTOR
+            * Math.sqrt(Math.log(tree.getVisits(tree.getParent(node)) + 1) / (visits + 1))
+            + SearchSettings.PRIOR_WEIGHT * prior / (visits + 1);
+  }
+
+  /**
+   * Blends the total of the given node with the mean of its all-moves-as-first statistics, scaled to the visits of the
+   * node. The weight of the all-moves-as-first mean starts at 1 and decays with the visits of the node, it is halved
+   * after about {@link SearchSettings#RAVE_EQUIVALENCE} visits.
+   * @param tree the tree the node is stored in
+   * @param node the node to calculate the total for
+   * @return the blended total
+   */
+  public static double blendWithAmaf(NodeArena tree, int node) {
+    int amafVisits = tree.getAmafVisits(node);
+    if(amafVisits == 0)
+      return tree.getTotal(node);
+    int visits = tree.getVisits(node);
+    double weight = Math.sqrt(SearchSettings.RAVE_EQUIVALENCE / (3.d * visits + SearchSettings.RAVE_EQUIVALENCE));
+    return (1 - weight) * tree.getTotal(node) + weight * visits * tree.getAmafTotal(node) / amafVisits;
   }
 
   /**
    * Corresponds to the backpropagation phase of MCTS. Takes a value and adds it to the total of the given node.
-   * Works recursively up the tree until a node without parent (root) is reached.
-   * @param node the {@link UCBNode} to add the given value to. This node's parent will be the next node the value will be added to.
-   *             If this node does not have a parent, the recursion is terminated.
+   * Works up the tree until the root is reached. The totals of chance nodes on the way are replaced by the expected
+   * value of their outcomes, see {@link UCBLogic#isChanceNode(NodeArena, int)}.
+   * @param tree the tree the node is stored in
+   * @param node the node to add the given value to. This node's parent will be the next node the value will be added
+   *             to, up to the root.
    * @param value the value to add to node and future nodes up the tree
    */
-  public static void backpropagate(UCBNode node, double value) {
-    node.setVisits(node.getVisits() + 1);
-    node.setTotal(node.getTotal() + value);
-    if(node.getParent() != null) {
-      backpropagate(node.getParent(), value);
+  public static void backpropagate(NodeArena tree, int node, double value) {
+    backpropagate(tree, node, value, 1);
+  }
+
+  /**
+   * Backpropagates the results of several simulations that started from the same node in a single pass.
+   * Adds the given count to the visits and mean times count to the total of the given node and all nodes up the tree.
+   * @param tree the tree the node is stored in
+   * @param node the node the simulations started from
+   * @param mean the mean value of the simulations
+   * @param count the amount of simulations
+   */
+  public static void backpropagate(NodeArena tree, int node, double mean, int count) {
+    double value = mean * count;
+    for(int current = node; current != NodeArena.NONE; current = tree.getParent(current)) {
+      tree.addVisits(current, count);
+      tree.addToTotal(current, value);
+      if(isChanceNode(tree, current))
+        applyExpectation(tree, current);
+    }
+  }
+
+  /**
+   * Backpropagates the value of a single simulation like {@link UCBLogic#backpropagate(NodeArena, int, double)} and
+   * updates the all-moves-as-first statistics in the same pass. On the way up, every child of a node whose action was
+   * played later in the iteration by the player choosing at that node gets the value, whether the action was played in
+   * the tree below the node or in the simulation.
+   * @param tree the tree the node is stored in
+   * @param node the node the simulation started from
+   * @param value the value of the simulation
+   * @param board the board the simulation ran on, its undo log holds all moves from the action of the node on
+   * @param trace the trace of the worker that ran the simulation, it is cleared first
+   */
+  public static void backpropagate(NodeArena tree, int node, double value, SimBoard board, AmafTrace trace) {
+    trace.clear();
+    for(int i = 0; i < board.getUndoDepth(); i++) {
+      trace.add(board.getMovePlayer(i), AmafTrace.keyOf(board.getMove(i)));
+    }
+    for(int current = node; current != NodeArena.NONE; current = tree.getParent(current)) {
+      tree.addVisits(current, 1);
+      tree.addToTotal(current, value);
+      if(isChanceNode(tree, current))
+        applyExpectation(tree, current);
+      int mover = tree.getMover(current);
+      if(mover >= 0 && tree.isExpanded(current)) {
+        int first = tree.getFirstChild(current);
+        for(int i = 0; i < tree.getChildCount(current); i++) {
+          if(trace.contains(mover, AmafTrace.keyOf(tree.getAction(first + i))))
+            tree.addAmaf(first + i, value);
+        }
+      }
+      int parent = tree.getParent(current);
+      if(parent != NodeArena.NONE)
+        trace.add(tree.getMover(parent), AmafTrace.keyOf(tree.getAction(current)));
+    }
+  }
+
+  /**
+   * Removes the virtual loss a worker added during selection from the given node and all nodes up the tree.
+   * @param tree the tree the node is stored in
+   * @param node the last node the worker selected
+   */
+  public static void revertVirtualLoss(NodeArena tree, int node) {
+    for(int current = node; current != NodeArena.NONE; current = tree.getParent(current)) {
+      tree.removeVirtualLoss(current);
     }
   }
 
   /**
    * Corresponds to the expansion phase of MCTS. Takes the given actions and attaches them as children to the given node.
-   * New nodes will be created with these actions.
-   * @param node the {@link UCBNode} to attach children to
-   * @param possibleActions a Set of {@link RiskAction} that is supposed to be attached to the given node as new nodes
+   * The children are published all at once, so workers that search the same tree never see a partially expanded node.
+   * Only the worker that claimed the expansion of the node (see {@link NodeArena#tryClaimExpansion(int)}) may call
+   * this method.
+   * Only the actions are recorded, the children take the state after the action of the given node
+   * ({@link NodeArena#getResultingState(int)}) from it the first time they need it, so the subtree below a node
+   * reflects the game after that node's action.
+   * @param tree the tree the node is stored in
+   * @param node the node to attach children to
+   * @param possibleActions the {@link RiskAction}s that are supposed to be attached to the given node as new nodes.
+   *                        They are copied, so the collection can be reused afterwards.
    */
-  public static void expandAll(UCBNode node, Set<RiskAction> possibleActions) {
+  public static void expandAll(NodeArena tree, int node, Collection<RiskAction> possibleActions) {
+    expandAll(tree, node, possibleActions, null, null);
+  }
+
+  /**
+   * Like {@link UCBLogic#expandAll(NodeArena, int, Collection)}, but the action of every child is applied to the given
+   * board. If {@link SearchSettings#TRANSPOSITIONS} is enabled, the children are hashed, so children that reach a
+   * position that is already in the tree share its statistics. Trading cards is not modelled exactly by the board, so
+   * these children are never shared. If a rating is given, the ratings of the children are scaled to priors between 0
+   * and 1, the best child gets 1 and the worst 0, see {@link NodeArena#getPrior(int)}.
+   * @param tree the tree the node is stored in
+   * @param node the node to attach children to
+   * @param possibleActions the {@link RiskAction}s that are supposed to be attached to the given node as new nodes
+   * @param board a board loaded with the resulting state of the node, it is in the same state afterwards.
+   *              null if the children should neither be hashed nor rated.
+   * @param rating rates a move right after it was applied to the board, null if the children should not be rated
+   */
+  public static void expandAll(NodeArena tree, int node, Collection<RiskAction> possibleActions, SimBoard board,
+                               IntToDoubleFunction rating) {
+    long[] actions = new long[possibleActions.size()];
+    int count = 0;
     for(RiskAction action : possibleActions) {
-      Risk newState = new Risk(node.getState());
-      newState.doAction(action);
-      UCBNode child = new UCBNode(node, action, newState);
-      node.addChild(child);
+      actions[count++] = tree.getCodec().encode(action);
+    }
+    expandAll(tree, node, actions, count, board, rating);
+  }
+
+  /**
+   * Like {@link UCBLogic#expandAll(NodeArena, int, Collection, SimBoard, IntToDoubleFunction)}, but the children are
+   * given by the codes of their actions, so they may be macro actions (see {@link ActionCodec#isMacro(long)}).
+   * The parts of a macro action are applied one after another, its rating is the sum of the ratings of its parts.
+   * @param tree the tree the node is stored in
+   * @param node the node to attach children to
+   * @param actions the codes of the actions of the children, see {@link ActionCodec}
+   * @param count the amount of actions to use from the array
+   * @param board a board loaded with the resulting state of the node, it is in the same state afterwards.
+   *              null if the children should neither be hashed nor rated.
+   * @param rating rates a move right after it was applied to the board, null if the children should not be rated
+   */
+  public static void expandAll(NodeArena tree, int node, long[] actions, int count, SimBoard board,
+                               IntToDoubleFunction rating) {
+    long[] hashes = board != null && SearchSettings.TRANSPOSITIONS ? new long[count] : null;
+    double[] priors = board != null && rating != null ? new double[count] : null;
+    ActionCodec codec = tree.getCodec();
+    for(int i = 0; i < count && (hashes != null || priors != null); i++) {
+      long code = actions[i];
+      int parts = codec.partCount(code);
+      for(int p = 0; p < parts; p++) {
+        int move = SimMove.of(codec, codec.part(code, p), board.getPhase() == SimBoard.FORTIFY);
+        board.apply(move);
+        if(priors != null)
+          priors[i] += rating.applyAsDouble(move);
+      }
+      if(hashes != null && ActionCodec.type(code) != ActionCodec.CARDS)
+        hashes[i] = board.getHash();
+      for(int p = 0; p < parts; p++) {
+        board.undo();
+      }
+    }
+    if(priors != null)
+      scaleToPriors(priors, count);
+    tree.setChildren(node, actions, hashes, priors, count);
+  }
+
+  /**
+   * Expands the given node with the outcomes of the dice of its pending attack. Every outcome gets its exact
+   * probability as prior (see {@link BattleOdds#getRollProbability(int, int, int, int)}), which makes the node a chance
+   * node that visits its outcomes by their probabilities and takes the expected value of them, see
+   * {@link UCBLogic#selectBest(NodeArena, int)} and {@link UCBLogic#backpropagate(NodeArena, int, double)}.
+   * Outcomes that are impossible with the dice are left out. If the dice do not fit the outcomes, the node is expanded
+   * like any other node.
+   * @param tree the tree the node is stored in
+   * @param node the node to attach the outcomes to
+   * @param outcomes all outcomes of the dice as {@link RiskAction}s
+   * @param board a board loaded with the resulting state of the node, it is in the same state afterwards
+   */
+  public static void expandOutcomes(NodeArena tree, int node, Collection<RiskAction> outcomes, SimBoard board) {
+    long[] actions = new long[outcomes.size()];
+    long[] hashes = SearchSettings.TRANSPOSITIONS ? new long[actions.length] : null;
+    double[] probabilities = new double[actions.length];
+    double total = 0.d;
+    int count = 0;
+    for(RiskAction outcome : outcomes) {
+      long code = tree.getCodec().encode(outcome);
+      int move = SimMove.of(outcome, false);
+      double probability = BattleOdds.getRollProbability(board.getAttackerDice(), board.getDefenderDice(),
+              SimMove.attackerCasualties(move), SimMove.defenderCasualties(move));
+      if(ActionCodec.type(code) != ActionCodec.CASUALTIES || probability == 0.d)
+        continue;
+      if(hashes != null) {
+        board.apply(move);
+        hashes[count] = board.getHash();
+        board.undo();
+      }
+      probabilities[count] = probability;
+      actions[count++] = code;
+      total += probability;
+    }
+    if(total == 0.d) {
+      expandAll(tree, node, outcomes, board, null);
+      return;
+    }
+    for(int i = 0; i < count; i++) {
+      probabilities[i] /= total;
+    }
+    tree.setChildren(node, actions, hashes, probabilities, count);
+  }
+
+  /**
+   * Sets the total of the given chance node to its visits times the expected value of its outcomes, so the value of
+   * the attack before it does not depend on how lucky the dice of its simulations were. Outcomes without visits are
+   * left out of the expectation. The total is overwritten, so no other worker may update the node at the same time,
+   * which is why chance nodes are not used in {@link SearchMode#TREE_PARALLEL}.
+   * @param tree the tree the node is stored in
+   * @param node the chance node, see {@link UCBLogic#isChanceNode(NodeArena, int)}
+   */
+  private static void applyExpectation(NodeArena tree, int node) {
+    int first = tree.getFirstChild(node);
+    double expectation = 0.d, probabilities = 0.d;
+    for(int i = 0; i < tree.getChildCount(node); i++) {
+      int child = first + i;
+      int visits = tree.getVisits(child);
+      if(visits > 0) {
+        expectation += tree.getPrior(child) * tree.getTotal(child) / visits;
+        probabilities += tree.getPrior(child);
+      }
     }
+    if(probabilities > 0.d)
+      tree.setTotal(node, tree.getVisits(node) * expectation / probabilities);
+  }
+
+  private static void scaleToPriors(double[] ratings, int count) {
+    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+    for(int i = 0; i < count; i++) {
+      min = Math.min(min, ratings[i]);
+      max = Math.max(max, ratings[i]);
+    }
+    for(int i = 0; i < count; i++) {
+      ratings[i] = max > min ? (ratings[i] - min) / (max - min) : 0.d;
+    }
+  }
+
+  /**
+   * Searches the children of the given node for the one that represents the given action
+   * @param tree the tree the node is stored in
+   * @param node the node whose children should be searched in
+   * @param action the {@link RiskAction} to search for
+   * @return the child with the given action or {@link NodeArena#NONE} if there is none
+   */
+  public static int findChild(NodeArena tree, int node, RiskAction action) {
+    return findChild(tree, node, ActionCodec.codeOf(action));
+  }
+
+  /**
+   * Searches the children of the given node for the one that represents the action of the given code
+   * @param tree the tree the node is stored in
+   * @param node the node whose children should be searched in
+   * @param code the code of the action to search for, see {@link ActionCodec}
+   * @return the child with the given action or {@link NodeArena#NONE} if there is none
+   */
+  public static int findChild(NodeArena tree, int node, long code) {
+    int first = tree.getFirstChild(node);
+    for(int i = 0; i < tree.getChildCount(node); i++) {
+      if(tree.getAction(first + i) == code)
+        return first + i;
+    }
+    return NodeArena.NONE;
   }
 
   /**
-   * Selects the child node of the given node that has the highest UCB value
-   * @param node the {@link UCBNode} whose children should be searched in
+   * Turns the given node into the root of a new tree. The new root keeps the visits, the total and all descendants of
+   * the given node, the rest of the old tree is no longer referenced.
+   * @param tree the tree the node is stored in
+   * @param node the node to promote
+   * @param state the game state the new root represents, this is the state after the action of the given node
+   * @return a new tree whose root has no associated {@link RiskAction}
+   */
+  public static NodeArena promoteToRoot(NodeArena tree, int node, Risk state) {
+    return tree.copySubtree(node, state);
+  }
+
+  /**
+   * Selects the child node of the given node that has the highest UCB value.
+   * Only the children that are uncovered by progressive widening are considered, see
+   * {@link UCBLogic#getSelectableChildCount(NodeArena, int)}.
+   * @param tree the tree the node is stored in
+   * @param node the node whose children should be searched in
    * @return the child node of the given node with the highest UCB value
    */
-  public static UCBNode selectBest(UCBNode node) {
-    UCBNode best = null;
+  public static int selectBest(NodeArena tree, int node) {
+    if(isChanceNode(tree, node))
+      return selectOutcome(tree, node);
+    int best = NodeArena.NONE;
     double bestValue = Double.MIN_VALUE;
-    for(UCBNode child : node.getChildren()) {
-      double ucb = calculateUCB(child);
+    int first = tree.getFirstChild(node);
+    int selectable = getSelectableChildCount(tree, node);
+    for(int i = 0; i < selectable; i++) {
+      int child = first + i;
+      double ucb = calculateUCB(tree, child);
       if(ucb == Double.MAX_VALUE)
         return child;
-      if(ucb > bestValue || best == null) {
+      if(ucb > bestValue || best == NodeArena.NONE) {
         best = child;
         bestValue = ucb;
       }
     }
     return best;
   }
+
+  /**
+   * Selects the child of the given node that was visited the most, ties are broken by the higher mean value. Unlike
+   * {@link UCBLogic#selectBest(NodeArena, int)} there is neither an exploration nor a prior term, so this is how the
+   * agent decides on the action it plays, no matter how the tree was searched.
+   * @param tree the tree the node is stored in
+   * @param node the node whose children should be searched in
+   * @return the most visited child of the given node, {@link NodeArena#NONE} if it has no children
+   */
+  public static int selectMostVisited(NodeArena tree, int node) {
+    int best = NodeArena.NONE;
+    int bestVisits = -1;
+    double bestMean = 0.d;
+    int first = tree.getFirstChild(node);
+    for(int i = 0; i < tree.getChildCount(node); i++) {
+      int child = first + i;
+      int visits = tree.getVisits(child);
+      double mean = visits > 0 ? tree.getTotal(child) / visits : 0.d;
+      if(visits > bestVisits || (visits == bestVisits && mean > bestMean)) {
+        best = child;
+        bestVisits = visits;
+        bestMean = mean;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Selects the outcome of the dice of the given chance node that has the fewest visits compared to its probability,
+   * so the visits of the outcomes follow their probabilities without sampling them. Pending virtual losses count as
+   * visits.
+   * @param tree the tree the node is stored in
+   * @param node the chance node, see {@link UCBLogic#isChanceNode(NodeArena, int)}
+   * @return the outcome to visit next
+   */
+  private static int selectOutcome(NodeArena tree, int node) {
+    int first = tree.getFirstChild(node);
+    int visits = 1;
+    for(int i = 0; i < tree.getChildCount(node); i++) {
+      visits += tree.getVisits(first + i) + tree.getVirtualLosses(first + i);
+    }
+    int best = first;
+    double bestDeficit = Double.NEGATIVE_INFINITY;
+    for(int i = 0; i < tree.getChildCount(node); i++) {
+      int child = first + i;
+      double deficit = tree.getPrior(child) * visits - tree.getVisits(child) - tree.getVirtualLosses(child);
+      if(deficit > bestDeficit) {
+        best = child;
+        bestDeficit = deficit;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * If the children of the given node are the outcomes of dice with known probabilities, see
+   * {@link UCBLogic#expandOutcomes(NodeArena, int, Collection, SimBoard)}
+   * @param tree the tree the node is stored in
+   * @param node the node to check
+   * @return true if the node is a chance node, false if a player chooses between its children
+   */
+  public static boolean isChanceNode(NodeArena tree, int node) {
+    return tree.getMover(node) < 0 && tree.getChildCount(node) > 0
+            && !Double.isNaN(tree.getPrior(tree.getFirstChild(node)));
+  }
+
+  /**
+   * The amount of children of the given node that can be selected. Nodes that widen progressively (see
+   * {@link NodeArena#isWidened(int)}) have their children sorted by a prior and only uncover the best
+   * {@link SearchSettings#WIDENING_BASE} + {@link SearchSettings#WIDENING_FACTOR} * visits ^
+   * {@link SearchSettings#WIDENING_EXPONENT} of them, so the search goes deeper below the promising ones before it
+   * spends visits on the others.
+   * @param tree the tree the node is stored in
+   * @param node the node whose children should be counted
+   * @return the amount of selectable children, they are the first children of the node
+   */
+  public static int getSelectableChildCount(NodeArena tree, int node) {
+    int count = tree.getChildCount(node);
+    if(!tree.isWidened(node))
+      return count;
+    int uncovered = SearchSettings.WIDENING_BASE + (int) (SearchSettings.WIDENING_FACTOR
+            * Math.pow(tree.getVisits(node), SearchSettings.WIDENING_EXPONENT));
+    return Math.min(count, uncovered);
+  }
+
+  /**
+   * Merges the statistics of several independently searched trees that all start from the same game state.
+   * The children of the given roots are grouped by their action and their visits and totals are summed up.
+   * Only the first layer of the trees is merged, deeper nodes are not part of the result. Children that none of the
+   * trees has uncovered yet (see {@link UCBLogic#getSelectableChildCount(NodeArena, int)}) are left out, as are children
+   * that no tree has visited, unless no child has been visited at all. The priors of the children are not merged.
+   * @param state the game state all given roots start from
+   * @param trees the trees to merge
+   * @return a new tree whose root holds the merged statistics
+   */
+  public static NodeArena mergeRoots(Risk state, List<NodeArena> trees) {
+    NodeArena merged = new NodeArena(state, trees.get(0).getCodec());
+    Map<Long, Integer> visitsByAction = new LinkedHashMap<>();
+    int visits = 0;
+    double total = 0.d;
+    for(NodeArena tree : trees) {
+      visits += tree.getVisits(NodeArena.ROOT);
+      total += tree.getTotal(NodeArena.ROOT);
+      int first = tree.getFirstChild(NodeArena.ROOT);
+      for(int i = 0; i < getSelectableChildCount(tree, NodeArena.ROOT); i++) {
+        visitsByAction.merge(tree.getAction(first + i), tree.getVisits(first + i), Integer::sum);
+      }
+    }
+    boolean anyVisited = visitsByAction.values().stream().anyMatch(childVisits -> childVisits > 0);
+    Map<Long, Integer> childrenByAction = new LinkedHashMap<>();
+    visitsByAction.forEach((action, childVisits) -> {
+      if(childVisits > 0 || !anyVisited)
+        childrenByAction.put(action, childrenByAction.size());
+    });
+    merged.setVisits(NodeArena.ROOT, visits);
+    merged.setTotal(NodeArena.ROOT, total);
+    long[] actions = new long[childrenByAction.size()];
+    childrenByAction.forEach((action, position) -> actions[position] = action);
+    merged.setChildren(NodeArena.ROOT, actions, actions.length);
+    int mergedFirst = merged.getFirstChild(NodeArena.ROOT);
+    for(NodeArena tree : trees) {
+      int first = tree.getFirstChild(NodeArena.ROOT);
+      for(int i = 0; i < tree.getChildCount(NodeArena.ROOT); i++) {
+        int child = first + i;
+        Integer position = childrenByAction.get(tree.getAction(child));
+        if(position == null)
+          continue;
+        int mergedChild = mergedFirst + position;
+        merged.setVisits(mergedChild, merged.getVisits(mergedChild) + tree.getVisits(child));
+        merged.setTotal(mergedChild, merged.getTotal(mergedChild) + tree.getTotal(child));
+        merged.setState(mergedChild, tree.getState(child));
+      }
+    }
+    return merged;
+  }
 }
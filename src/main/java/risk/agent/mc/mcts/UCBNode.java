@@ -1,25 +1,28 @@
 package risk.agent.mc.mcts;
 
-import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
-import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
- * A tree node that can be used in an MCTS-Tree that uses UCB.
+ * A view of a node of an MCTS-Tree that uses UCB. The node itself and its statistics are stored in a
+ * {@link NodeArena}, this view only reads them for event-logging.
  */
 public class UCBNode extends TreeNode<UCBNode> {
-  private double total = 0;
-  private int visits = 0;
   private double ucbValue = -1;
 
 
   /**
-   * Creates a new {@link UCBNode} object
-   * @param parent the parent of the node to create, null if no parent should be set
-   * @param riskAction the {@link RiskAction} this node should represent, null if no action should be associated
-   * @param state the game state before the action of this node is executed
+   * Creates a new {@link UCBNode} view
+   * @param tree the tree the node is stored in
+   * @param index the index of the node in the tree
+   * @param parent the view of the parent of the node, null if it is the first node that is viewed
    */
-  public UCBNode(UCBNode parent, RiskAction riskAction, Risk state) {
-    super(parent, riskAction, state);
+  public UCBNode(NodeArena tree, int index, UCBNode parent) {
+    super(tree, index, parent);
+  }
+
+  @Override
+  protected UCBNode createChild(int index) {
+    return new UCBNode(tree, index, this);
   }
 
   /**
@@ -27,15 +30,7 @@ public class UCBNode extends TreeNode<UCBNode> {
    * @return the total value of this node as a double
    */
   public double getTotal() {
-    return total;
-  }
-
-  /**
-   * Set the total value of this node
-   * @param total the total to be set
-   */
-  public void setTotal(double total) {
-    this.total = total;
+    return tree.getTotal(index);
   }
 
   /**
@@ -43,20 +38,21 @@ public class UCBNode extends TreeNode<UCBNode> {
    * @return the visits of this node as an integer
    */
   public int getVisits() {
-    return visits;
+    return tree.getVisits(index);
   }
 
   /**
-   * Set the visits this node has received during MCTS-Operations
-   * @param visits the visits to be set
+   * The amount of workers that currently passed this node during selection and have not backpropagated yet.
+   * @return the amount of pending virtual losses
    */
-  public void setVisits(int visits) {
-    this.visits = visits;
+  @JsonIgnore
+  public int getVirtualLosses() {
+    return tree.getVirtualLosses(index);
   }
 
   /**
    * The UCB value set to this node. Only used for event-logging.
-   * May not be accurate for other purposes. Use {@link UCBLogic#calculateUCB(UCBNode)} instead.
+   * May not be accurate for other purposes. Use {@link UCBLogic#calculateUCB(NodeArena, int)} instead.
    * @return the UCB value of this node
    */
   public double getUcbValue() {
@@ -65,7 +61,7 @@ public class UCBNode extends TreeNode<UCBNode> {
 
   /**
    * Set the UCB value for this node. Only used for event-logging.
-   * May not be accurate for other purposes. Use {@link UCBLogic#calculateUCB(UCBNode)} instead.
+   * May not be accurate for other purposes. Use {@link UCBLogic#calculateUCB(NodeArena, int)} instead.
    * @param ucbValue the UCB value to set
    * @return this
    */
@@ -0,0 +1,115 @@
+package risk.agent.mc.sim;
+
+import java.util.Arrays;
+
+/**
+ * The exact odds of the battles of Risk, so the search does not have to sample dice to learn them.
+ * The odds of a single roll are enumerated over all faces of the dice once. The odds of attacking until the territory
+ * is conquered or the attacker runs out of troops are derived from them for all troops up to
+ * {@link BattleOdds#MAX_TROOPS}. Ties go to the defender, like in {@link SimBoard#rollCasualties(java.util.Random)}.
+ */
+public class BattleOdds {
+
+  public static final int MAX_ATTACKER_DICE = 3;
+  public static final int MAX_DEFENDER_DICE = 2;
+  /**
+   * The most troops of a side the odds of a whole battle are calculated for. Larger battles are scaled down.
+   */
+  public static final int MAX_TROOPS = 32;
+
+  /**
+   * The odds of a single roll by the dice of the attacker, the dice of the defender and the casualties of the defender
+   */
+  private static final double[][][] rollOdds = new double[MAX_ATTACKER_DICE + 1][MAX_DEFENDER_DICE + 1][];
+  /**
+   * The odds of conquering by the troops the attacker can attack with and the troops of the defender
+   */
+  private static final double[][] conquestOdds = new double[MAX_TROOPS + 1][MAX_TROOPS + 1];
+
+  static {
+    for(int attackerDice = 1; attackerDice <= MAX_ATTACKER_DICE; attackerDice++) {
+      for(int defenderDice = 1; defenderDice <= MAX_DEFENDER_DICE; defenderDice++) {
+        rollOdds[attackerDice][defenderDice] = enumerateRoll(attackerDice, defenderDice);
+      }
+    }
+    for(int attackers = 1; attackers <= MAX_TROOPS; attackers++) {
+      conquestOdds[attackers][0] = 1.d;
+      for(int defenders = 1; defenders <= MAX_TROOPS; defenders++) {
+        double[] odds = rollOdds[Math.min(MAX_ATTACKER_DICE, attackers)][Math.min(MAX_DEFENDER_DICE, defenders)];
+        int losses = odds.length - 1;
+        for(int defenderCasualties = 0; defenderCasualties <= losses; defenderCasualties++) {
+          conquestOdds[attackers][defenders] += odds[defenderCasualties]
+                  * conquestOdds[attackers - (losses - defenderCasualties)][defenders - defenderCasualties];
+        }
+      }
+    }
+  }
+
+  /**
+   * The probability of a single roll ending with the given casualties
+   * @param attackerDice the dice of the attacker, between 1 and {@link BattleOdds#MAX_ATTACKER_DICE}
+   * @param defenderDice the dice of the defender, between 1 and {@link BattleOdds#MAX_DEFENDER_DICE}
+   * @param attackerCasualties the troops the attacker loses
+   * @param defenderCasualties the troops the defender loses
+   * @return the probability of the casualties, 0 if they are impossible with the given dice
+   */
+  public static double getRollProbability(int attackerDice, int defenderDice, int attackerCasualties,
+                                          int defenderCasualties) {
+    if(attackerDice < 1 || attackerDice > MAX_ATTACKER_DICE || defenderDice < 1 || defenderDice > MAX_DEFENDER_DICE
+            || attackerCasualties < 0 || defenderCasualties < 0
+            || attackerCasualties + defenderCasualties != Math.min(attackerDice, defenderDice))
+      return 0.d;
+    return rollOdds[attackerDice][defenderDice][defenderCasualties];
+  }
+
+  /**
+   * The probability of conquering a territory by attacking with as many dice as possible until either the territory is
+   * conquered or no troops are left to attack with. Battles with more than {@link BattleOdds#MAX_TROOPS} on a side are
+   * scaled down to it, keeping the ratio of the troops.
+   * @param attackers the troops that can attack, which are the troops of the attacking territory minus 1
+   * @param defenders the troops of the defending territory
+   * @return the probability of conquering the territory
+   */
+  public static double getConquestProbability(int attackers, int defenders) {
+    if(attackers <= 0)
+      return 0.d;
+    if(defenders <= 0)
+      return 1.d;
+    int larger = Math.max(attackers, defenders);
+    if(larger > MAX_TROOPS) {
+      attackers = Math.max(1, Math.round((float) attackers * MAX_TROOPS / larger));
+      defenders = Math.max(1, Math.round((float) defenders * MAX_TROOPS / larger));
+    }
+    return conquestOdds[attackers][defenders];
+  }
+
+  /**
+   * Rolls every combination of faces of the given dice once
+   * @return the odds of the casualties of the defender
+   */
+  private static double[] enumerateRoll(int attackerDice, int defenderDice) {
+    int losses = Math.min(attackerDice, defenderDice);
+    double[] odds = new double[losses + 1];
+    int combinations = (int) Math.pow(6, attackerDice + defenderDice);
+    for(int combination = 0; combination < combinations; combination++) {
+      int[] attacker = new int[attackerDice];
+      int[] defender = new int[defenderDice];
+      int rest = combination;
+      for(int i = 0; i < attackerDice; i++, rest /= 6) {
+        attacker[i] = rest % 6;
+      }
+      for(int i = 0; i < defenderDice; i++, rest /= 6) {
+        defender[i] = rest % 6;
+      }
+      Arrays.sort(attacker);
+      Arrays.sort(defender);
+      int defenderCasualties = 0;
+      for(int i = 1; i <= losses; i++) {
+        if(attacker[attackerDice - i] > defender[defenderDice - i])
+          defenderCasualties++;
+      }
+      odds[defenderCasualties] += 1.d / combinations;
+    }
+    return odds;
+  }
+}
@@ -0,0 +1,46 @@
+package risk.agent.mc.sim;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of encoded moves (see {@link SimMove}) that is reused between simulation steps.
+ */
+public class MoveBuffer {
+  private int[] moves = new int[64];
+  private int size = 0;
+
+  /**
+   * Appends a move to this buffer
+   * @param move the encoded move to add
+   */
+  public void add(int move) {
+    if(size == moves.length) {
+      moves = Arrays.copyOf(moves, size * 2);
+    }
+    moves[size++] = move;
+  }
+
+  /**
+   * The move at the given position
+   * @param index the position of the move
+   * @return the encoded move
+   */
+  public int get(int index) {
+    return moves[index];
+  }
+
+  /**
+   * The amount of moves in this buffer
+   * @return the amount of moves
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes all moves from this buffer without releasing its memory
+   */
+  public void clear() {
+    size = 0;
+  }
+}
@@ -0,0 +1,917 @@
+package risk.agent.mc.sim;
+
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskTerritory;
+import risk.agent.mc.data.Bitboard;
+import risk.agent.mc.data.BoardTopology;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A compact model of a game of Risk that is used for the simulation phase of MCTS. The board is kept in primitive
+ * arrays and moves (see {@link SimMove}) are applied in place, so a simulation does not have to copy the engine's
+ * game for every step.
+ * The structure of the board is a {@link BoardTopology} that is shared by all copies, only the owners, troops and turn
+ * information belong to a single board.
+ * Every applied move is recorded in an undo log, so it can be taken back with {@link SimBoard#undo()} and the state
+ * right before the last move can be read without keeping a copy of the board.
+ * The board also keeps the distance of every territory to the closest enemy of one player, its perspective, and the
+ * {@link TerritoryRewards} of that player, and updates both locally whenever a territory changes its owner.
+ * The owners and troops are hashed with {@link Zobrist} keys that are updated with every change, so positions that
+ * are reached by different orders of moves can be recognized, see {@link SimBoard#getHash()}.
+ * The rules are simplified: cards are traded automatically whenever a player holds enough of them, troops can only be
+ * fortified between neighbouring territories and the initial placing phase ends as soon as all territories are taken.
+ */
+public class SimBoard {
+  public static final int REINFORCEMENT = 0;
+  public static final int ATTACK = 1;
+  public static final int OCCUPY = 2;
+  public static final int FORTIFY = 3;
+
+  private static final int MIN_REINFORCEMENTS = 3;
+  private static final int TERRITORIES_PER_REINFORCEMENT = 3;
+  private static final int MAX_ATTACKING_TROOPS = 3;
+  private static final int MAX_DEFENDING_TROOPS = 2;
+  private static final int CARDS_PER_TRADE = 3;
+  private static final int TROOPS_PER_TRADE = 4;
+
+  private static final int TROOPS_CHANGE = 0;
+  private static final int OWNER_CHANGE = 1;
+  private static final int CARDS_CHANGE = 2;
+  private static final int FRAME_HEADER = 11;
+
+  private final BoardTopology topology;
+  private final int territoryCount;
+  private final int playerCount;
+  private final int perspective;
+
+  private final int[] owner;
+  private final Bitboard bitboard;
+  private final int[] enemyDistances;
+  private final TerritoryRewards rewards;
+  private final int[] troops;
+  private final int[] territoriesOwned;
+  /**
+   * The amount of territories each player owns on each continent, at index continent * playerCount + player
+   */
+  private final int[] continentOwned;
+  private final int[] continentOccupied;
+  private final int[] cards;
+  /**
+   * The xor of the {@link Zobrist} keys of the owners and troops of all territories
+   */
+  private long territoryHash;
+  private int unoccupied;
+  private int currentPlayer;
+  private int phase;
+  private int reinforcementsLeft;
+  private boolean attackPending;
+  private int attackSource;
+  private int attackTarget;
+  private int attackTroops;
+  private boolean conquered;
+  private boolean gameOver;
+
+  /**
+   * Every frame starts with the move and the scalar state before it, followed by pairs of (kind and index, old value)
+   * for every changed array entry
+   */
+  private int[] undoLog = new int[256];
+  private int undoSize = 0;
+  private int[] frames = new int[64];
+  private int frameCount = 0;
+
+  private SimBoard(BoardTopology topology, int playerCount, int perspective, TerritoryRewards rewards) {
+    this.topology = topology;
+    this.territoryCount = topology.getTerritoryCount();
+    this.playerCount = playerCount;
+    this.perspective = perspective;
+    this.enemyDistances = new int[territoryCount];
+    this.rewards = rewards;
+    this.owner = new int[territoryCount];
+    this.bitboard = new Bitboard(topology, playerCount);
+    this.troops = new int[territoryCount];
+    this.territoriesOwned = new int[playerCount];
+    this.continentOwned = new int[topology.getContinentCount() * playerCount];
+    this.continentOccupied = new int[topology.getContinentCount()];
+    this.cards = new int[playerCount];
+  }
+
+  /**
+   * Creates a board with the given topology and loads the current state of the given game
+   * @param game the game to read the state from
+   * @param topology the {@link BoardTopology} of the game
+   * @param playerCount the amount of players of the game
+   * @param perspective the player whose distances to enemies and rewards are kept up to date
+   * @param continentBaseRewards the base reward of each continent for the perspective, indexed like the continents of
+   *                             the topology
+   * @return a new board
+   */
+  public static SimBoard create(Risk game, BoardTopology topology, int playerCount, int perspective,
+                                double[] continentBaseRewards) {
+    SimBoard simBoard = new SimBoard(topology, playerCount, perspective,
+            new TerritoryRewards(topology, perspective, continentBaseRewards));
+    simBoard.load(game, true);
+    return simBoard;
+  }
+
+  /**
+   * Creates a copy of this board. The topology is shared, the state is copied.
+   * @return a new board in the same state
+   */
+  public SimBoard copy() {
+    SimBoard copy = new SimBoard(topology, playerCount, perspective, rewards.copy());
+    copy.copyFrom(this);
+    return copy;
+  }
+
+  /**
+   * Overwrites the state and the undo log of this board with the ones of the given board, which must have the same
+   * topology
+   * @param other the board to copy the state from
+   */
+  public void copyFrom(SimBoard other) {
+    System.arraycopy(other.owner, 0, owner, 0, territoryCount);
+    bitboard.copyFrom(other.bitboard);
+    System.arraycopy(other.enemyDistances, 0, enemyDistances, 0, territoryCount);
+    rewards.copyFrom(other.rewards);
+    System.arraycopy(other.troops, 0, troops, 0, territoryCount);
+    System.arraycopy(other.territoriesOwned, 0, territoriesOwned, 0, playerCount);
+    System.arraycopy(other.continentOwned, 0, continentOwned, 0, continentOwned.length);
+    System.arraycopy(other.continentOccupied, 0, continentOccupied, 0, continentOccupied.length);
+    System.arraycopy(other.cards, 0, cards, 0, playerCount);
+    territoryHash = other.territoryHash;
+    unoccupied = other.unoccupied;
+    currentPlayer = other.currentPlayer;
+    phase = other.phase;
+    reinforcementsLeft = other.reinforcementsLeft;
+    attackPending = other.attackPending;
+    attackSource = other.attackSource;
+    attackTarget = other.attackTarget;
+    attackTroops = other.attackTroops;
+    conquered = other.conquered;
+    gameOver = other.gameOver;
+    if(undoLog.length < other.undoSize)
+      undoLog = new int[other.undoLog.length];
+    if(frames.length < other.frameCount)
+      frames = new int[other.frames.length];
+    System.arraycopy(other.undoLog, 0, undoLog, 0, other.undoSize);
+    System.arraycopy(other.frames, 0, frames, 0, other.frameCount);
+    undoSize = other.undoSize;
+    frameCount = other.frameCount;
+  }
+
+  /**
+   * Overwrites the state of this board with the state of the given game and clears the undo log. The cards of the
+   * players are unknown and are reset.
+   * @param game the game to read the state from, it must have the same topology
+   * @param countReinforcements if true, the troops left to place in the reinforcement phase are read from the possible
+   *                            actions of the game. Otherwise they are left at 0, which is enough to evaluate a state
+   *                            but not to continue a simulation from it.
+   */
+  public void load(Risk game, boolean countReinforcements) {
+    Arrays.fill(territoriesOwned, 0);
+    Arrays.fill(continentOwned, 0);
+    Arrays.fill(continentOccupied, 0);
+    Arrays.fill(cards, 0);
+    bitboard.clear();
+    undoSize = 0;
+    frameCount = 0;
+    unoccupied = 0;
+    for(Map.Entry<Integer, RiskTerritory> entry : game.getBoard().getTerritories().entrySet()) {
+      int id = entry.getKey();
+      owner[id] = entry.getValue().getOccupantPlayerId();
+      troops[id] = entry.getValue().getTroops();
+      bitboard.setOwner(id, -1, owner[id]);
+      if(owner[id] < 0) {
+        unoccupied++;
+      } else {
+        territoriesOwned[owner[id]]++;
+        continentOwned[topology.getContinentOf(id) * playerCount + owner[id]]++;
+        continentOccupied[topology.getContinentOf(id)]++;
+      }
+    }
+    topology.calculateDistancesTo(getEnemyMaskOfPerspective(), enemyDistances);
+    rewards.reset(this);
+    territoryHash = 0L;
+    for(int id = 0; id < territoryCount; id++) {
+      territoryHash ^= Zobrist.owner(id, owner[id]) ^ Zobrist.troops(id, troops[id]);
+    }
+    currentPlayer = game.getCurrentPlayer();
+    phase = ATTACK;
+    reinforcementsLeft = 0;
+    attackPending = false;
+    attackSource = -1;
+    attackTarget = -1;
+    attackTroops = 0;
+    conquered = false;
+    gameOver = game.isGameOver();
+    if(gameOver)
+      return;
+
+    List<ActionRecord<RiskAction>> records = game.getActionRecords();
+    RiskAction lastAction = records.isEmpty() ? null : records.get(records.size() - 1).getAction();
+    if(currentPlayer < 0) {
+      // the dice of the last attack have not been rolled yet
+      currentPlayer = records.get(records.size() - 1).getPlayer();
+      attackPending = true;
+      attackSource = lastAction.attackingId();
+      attackTarget = lastAction.selected();
+      attackTroops = lastAction.troops();
+      return;
+    }
+
+    RiskBoard board = game.getBoard();
+    if(board.isReinforcementPhase()) {
+      phase = REINFORCEMENT;
+      if(countReinforcements && unoccupied == 0) {
+        for(RiskAction action : game.getPossibleActions()) {
+          if(action.attackingId() == -1 && action.selected() >= 0)
+            reinforcementsLeft = Math.max(reinforcementsLeft, action.troops());
+        }
+        if(reinforcementsLeft == 0)
+          reinforcementsLeft = calculateReinforcements(currentPlayer);
+      }
+    } else if(board.isFortifyPhase()) {
+      phase = FORTIFY;
+    } else if(lastAction != null && lastAction.selected() == -1 && records.size() >= 2) {
+      RiskAction attack = records.get(records.size() - 2).getAction();
+      attackSource = attack.attackingId();
+      attackTarget = attack.selected();
+      attackTroops = attack.troops() - lastAction.attackerCasualties();
+      if(attackTarget >= 0 && troops[attackTarget] <= 0)
+        phase = OCCUPY;
+    }
+  }
+
+  /**
+   * Applies the given move to this board and records it in the undo log
+   * @param move the encoded move, see {@link SimMove}
+   */
+  public void apply(int move) {
+    pushFrame(move);
+    switch(SimMove.type(move)) {
+      case SimMove.REINFORCE:
+        reinforce(SimMove.target(move), SimMove.troops(move));
+        break;
+      case SimMove.ATTACK:
+        attackPending = true;
+        attackSource = SimMove.source(move);
+        attackTarget = SimMove.target(move);
+        attackTroops = SimMove.troops(move);
+        break;
+      case SimMove.CASUALTIES:
+        resolveAttack(SimMove.attackerCasualties(move), SimMove.defenderCasualties(move));
+        break;
+      case SimMove.OCCUPY:
+        occupy(SimMove.troops(move));
+        break;
+      case SimMove.FORTIFY:
+        setTroops(SimMove.source(move), troops[SimMove.source(move)] - SimMove.troops(move));
+        setTroops(SimMove.target(move), troops[SimMove.target(move)] + SimMove.troops(move));
+        endTurn();
+        break;
+      case SimMove.END_PHASE:
+        if(phase == ATTACK)
+          phase = FORTIFY;
+        else
+          endTurn();
+        break;
+      case SimMove.CARDS:
+        tradeCards();
+        break;
+    }
+  }
+
+  /**
+   * Rolls the dice of the pending attack
+   * @param random the source of randomness for the dice
+   * @return a move of type {@link SimMove#CASUALTIES} with the outcome of the attack
+   */
+  public int rollCasualties(Random random) {
+    int attackerDice = getAttackerDice();
+    int defenderDice = getDefenderDice();
+    int attackerHigh = 0, attackerSecond = 0;
+    for(int i = 0; i < attackerDice; i++) {
+      int roll = 1 + random.nextInt(6);
+      if(roll > attackerHigh) {
+        attackerSecond = attackerHigh;
+        attackerHigh = roll;
+      } else if(roll > attackerSecond) {
+        attackerSecond = roll;
+      }
+    }
+    int defenderHigh = 0, defenderSecond = 0;
+    for(int i = 0; i < defenderDice; i++) {
+      int roll = 1 + random.nextInt(6);
+      if(roll > defenderHigh) {
+        defenderSecond = defenderHigh;
+        defenderHigh = roll;
+      } else if(roll > defenderSecond) {
+        defenderSecond = roll;
+      }
+    }
+    int attackerCasualties = 0, defenderCasualties = 0;
+    if(attackerHigh > defenderHigh)
+      defenderCasualties++;
+    else
+      attackerCasualties++;
+    if(Math.min(attackerDice, defenderDice) > 1) {
+      if(attackerSecond > defenderSecond)
+        defenderCasualties++;
+      else
+        attackerCasualties++;
+    }
+    return SimMove.casualties(attackerCasualties, defenderCasualties);
+  }
+
+  private void reinforce(int territoryId, int amount) {
+    if(owner[territoryId] < 0) {
+      setOwner(territoryId, currentPlayer);
+      setTroops(territoryId, 1);
+      unoccupied--;
+      currentPlayer = (currentPlayer + 1) % playerCount;
+      if(unoccupied == 0)
+        startTurn();
+      return;
+    }
+    setTroops(territoryId, troops[territoryId] + amount);
+    reinforcementsLeft -= amount;
+    if(reinforcementsLeft <= 0)
+      phase = ATTACK;
+  }
+
+  private void resolveAttack(int attackerCasualties, int defenderCasualties) {
+    setTroops(attackSource, troops[attackSource] - attackerCasualties);
+    setTroops(attackTarget, Math.max(0, troops[attackTarget] - defenderCasualties));
+    attackTroops -= attackerCasualties;
+    attackPending = false;
+    if(troops[attackTarget] == 0)
+      phase = OCCUPY;
+  }
+
+  private void occupy(int amount) {
+    int defender = owner[attackTarget];
+    setTroops(attackSource, troops[attackSource] - amount);
+    setTroops(attackTarget, amount);
+    setOwner(attackTarget, currentPlayer);
+    conquered = true;
+    phase = ATTACK;
+    if(defender >= 0 && territoriesOwned[defender] == 0) {
+      setCards(currentPlayer, cards[currentPlayer] + cards[defender]);
+      setCards(defender, 0);
+      int alive = 0;
+      for(int player = 0; player < playerCount; player++) {
+        if(territoriesOwned[player] > 0)
+          alive++;
+      }
+      gameOver = alive <= 1;
+    }
+  }
+
+  private void endTurn() {
+    if(conquered)
+      setCards(currentPlayer, cards[currentPlayer] + 1);
+    conquered = false;
+    do {
+      currentPlayer = (currentPlayer + 1) % playerCount;
+    } while(territoriesOwned[currentPlayer] == 0);
+    startTurn();
+  }
+
+  private void startTurn() {
+    phase = REINFORCEMENT;
+    reinforcementsLeft = calculateReinforcements(currentPlayer);
+    tradeCards();
+  }
+
+  private void tradeCards() {
+    if(cards[currentPlayer] >= CARDS_PER_TRADE) {
+      setCards(currentPlayer, cards[currentPlayer] - CARDS_PER_TRADE);
+      reinforcementsLeft += TROOPS_PER_TRADE;
+    }
+  }
+
+  private int calculateReinforcements(int player) {
+    int reinforcements = Math.max(MIN_REINFORCEMENTS, territoriesOwned[player] / TERRITORIES_PER_REINFORCEMENT);
+    for(int c = 0; c < topology.getContinentCount(); c++) {
+      if(continentOwned[c * playerCount + player] == topology.getContinentSize(c))
+        reinforcements += topology.getContinentBonus(c);
+    }
+    return reinforcements;
+  }
+
+  private void setOwner(int territoryId, int player) {
+    logChange(OWNER_CHANGE, territoryId, owner[territoryId]);
+    changeOwner(territoryId, player);
+  }
+
+  private void changeOwner(int territoryId, int player) {
+    boolean wasEnemy = owner[territoryId] != perspective;
+    int continent = topology.getContinentOf(territoryId);
+    bitboard.setOwner(territoryId, owner[territoryId], player);
+    territoryHash ^= Zobrist.owner(territoryId, owner[territoryId]) ^ Zobrist.owner(territoryId, player);
+    if(owner[territoryId] >= 0) {
+      territoriesOwned[owner[territoryId]]--;
+      continentOwned[continent * playerCount + owner[territoryId]]--;
+      continentOccupied[continent]--;
+    }
+    owner[territoryId] = player;
+    if(player >= 0) {
+      territoriesOwned[player]++;
+      continentOwned[continent * playerCount + player]++;
+      continentOccupied[continent]++;
+    }
+    if(wasEnemy != (player != perspective))
+      updateEnemyDistances(territoryId, player != perspective);
+    rewards.update(this, territoryId);
+  }
+
+  /**
+   * Updates the distances to the closest enemy of the perspective after a territory changed sides. A new enemy
+   * territory can only bring territories closer, so it is enough to compare with its distance. If an enemy territory
+   * was lost, only the territories whose closest enemy it was are measured again.
+   */
+  private void updateEnemyDistances(int territoryId, boolean becameEnemy) {
+    if(becameEnemy) {
+      for(int id = 0; id < territoryCount; id++) {
+        enemyDistances[id] = Math.min(enemyDistances[id], topology.getDistance(id, territoryId));
+      }
+      return;
+    }
+    long enemies = getEnemyMaskOfPerspective();
+    for(int id = 0; id < territoryCount; id++) {
+      if(enemyDistances[id] != topology.getDistance(id, territoryId))
+        continue;
+      int distance = Integer.MAX_VALUE;
+      for(long remaining = enemies; remaining != 0; remaining &= remaining - 1) {
+        distance = Math.min(distance, topology.getDistance(id, Long.numberOfTrailingZeros(remaining)));
+      }
+      enemyDistances[id] = distance;
+    }
+  }
+
+  private long getEnemyMaskOfPerspective() {
+    return topology.getTerritoryMask() & ~bitboard.getOwnerMask(perspective);
+  }
+
+  private void setTroops(int territoryId, int amount) {
+    logChange(TROOPS_CHANGE, territoryId, troops[territoryId]);
+    changeTroops(territoryId, amount);
+  }
+
+  private void changeTroops(int territoryId, int amount) {
+    territoryHash ^= Zobrist.troops(territoryId, troops[territoryId]) ^ Zobrist.troops(territoryId, amount);
+    troops[territoryId] = amount;
+  }
+
+  private void setCards(int player, int amount) {
+    logChange(CARDS_CHANGE, player, cards[player]);
+    cards[player] = amount;
+  }
+
+  private void pushFrame(int move) {
+    if(frameCount == frames.length)
+      frames = Arrays.copyOf(frames, frameCount * 2);
+    frames[frameCount++] = undoSize;
+    ensureUndoCapacity(FRAME_HEADER);
+    undoLog[undoSize++] = move;
+    undoLog[undoSize++] = currentPlayer;
+    undoLog[undoSize++] = unoccupied;
+    undoLog[undoSize++] = phase;
+    undoLog[undoSize++] = reinforcementsLeft;
+    undoLog[undoSize++] = attackPending ? 1 : 0;
+    undoLog[undoSize++] = attackSource;
+    undoLog[undoSize++] = attackTarget;
+    undoLog[undoSize++] = attackTroops;
+    undoLog[undoSize++] = conquered ? 1 : 0;
+    undoLog[undoSize++] = gameOver ? 1 : 0;
+  }
+
+  private void logChange(int kind, int index, int oldValue) {
+    if(frameCount == 0)
+      return;
+    ensureUndoCapacity(2);
+    undoLog[undoSize++] = kind << 16 | index;
+    undoLog[undoSize++] = oldValue;
+  }
+
+  private void ensureUndoCapacity(int additional) {
+    if(undoSize + additional > undoLog.length)
+      undoLog = Arrays.copyOf(undoLog, Math.max(undoLog.length * 2, undoSize + additional));
+  }
+
+  /**
+   * Takes back the last move that was applied to this board
+   * @throws IllegalStateException if the undo log is empty
+   */
+  public void undo() {
+    if(frameCount == 0)
+      throw new IllegalStateException("There is no move to undo");
+    int start = frames[--frameCount];
+    for(int i = undoSize - 2; i >= start + FRAME_HEADER; i -= 2) {
+      int index = undoLog[i] & 0xFFFF;
+      int oldValue = undoLog[i + 1];
+      switch(undoLog[i] >>> 16) {
+        case TROOPS_CHANGE:
+          changeTroops(index, oldValue);
+          break;
+        case OWNER_CHANGE:
+          changeOwner(index, oldValue);
+          break;
+        case CARDS_CHANGE:
+          cards[index] = oldValue;
+          break;
+      }
+    }
+    currentPlayer = undoLog[start + 1];
+    unoccupied = undoLog[start + 2];
+    phase = undoLog[start + 3];
+    reinforcementsLeft = undoLog[start + 4];
+    attackPending = undoLog[start + 5] == 1;
+    attackSource = undoLog[start + 6];
+    attackTarget = undoLog[start + 7];
+    attackTroops = undoLog[start + 8];
+    conquered = undoLog[start + 9] == 1;
+    gameOver = undoLog[start + 10] == 1;
+    undoSize = start;
+  }
+
+  /**
+   * The Zobrist hash of the current position. Positions with the same owners, troops, current player, phase,
+   * reinforcements left, pending attack or occupation, conquest of the current turn and cards get the same hash, no
+   * matter in which order the moves that lead to them were applied. Boards that were loaded from a game only know the
+   * cards that changed since then, see {@link SimBoard#loadCardChanges(Risk, int)}.
+   * @return the hash of the position
+   */
+  public long getHash() {
+    return territoryHash ^ Zobrist.turn(currentPlayer, phase, reinforcementsLeft, attackSource, attackTarget,
+            attackTroops, attackPending, conquered, cards);
+  }
+
+  /**
+   * Replays the cards the players got and traded and the conquests of the given game from the given action record on,
+   * so positions that were reached with different cards or conquests can be told apart by {@link SimBoard#getHash()}.
+   * The cards before the record are unknown, so the cards of the board are relative to them and may be negative.
+   * Cards that are taken from eliminated players are not replayed.
+   * Must be called right after {@link SimBoard#load(Risk, boolean)} with the same game.
+   * @param game the game the board was loaded from
+   * @param firstRecord the index of the first action record to replay
+   */
+  public void loadCardChanges(Risk game, int firstRecord) {
+    List<ActionRecord<RiskAction>> records = game.getActionRecords();
+    int turnPlayer = -1;
+    boolean turnConquered = false;
+    for(int i = firstRecord; i < records.size(); i++) {
+      int player = records.get(i).getPlayer();
+      if(player < 0)
+        continue;
+      if(player != turnPlayer) {
+        if(turnConquered)
+          cards[turnPlayer]++;
+        turnPlayer = player;
+        turnConquered = false;
+      }
+      RiskAction action = records.get(i).getAction();
+      if(action.isCardIds())
+        cards[player] -= CARDS_PER_TRADE;
+      else if(action.selected() == -2)
+        turnConquered = true;
+    }
+    if(turnConquered && turnPlayer != currentPlayer)
+      cards[turnPlayer]++;
+    conquered = turnConquered && turnPlayer == currentPlayer;
+  }
+
+  /**
+   * The amount of moves that can be taken back with {@link SimBoard#undo()}
+   * @return the amount of moves in the undo log
+   */
+  public int getUndoDepth() {
+    return frameCount;
+  }
+
+  /**
+   * If a move was applied since the board was loaded
+   * @return true if there is a last move
+   */
+  public boolean hasPreviousMove() {
+    return frameCount > 0;
+  }
+
+  /**
+   * A move of the undo log, counted from the oldest move that can still be taken back
+   * @param index the position of the move, below {@link SimBoard#getUndoDepth()}
+   * @return the encoded move, see {@link SimMove}
+   */
+  public int getMove(int index) {
+    return undoLog[frames[index]];
+  }
+
+  /**
+   * The player who applied a move of the undo log. For the outcome of an attack this is the attacker.
+   * @param index the position of the move, below {@link SimBoard#getUndoDepth()}
+   * @return the id of the player whose turn it was before the move
+   */
+  public int getMovePlayer(int index) {
+    return undoLog[frames[index] + 1];
+  }
+
+  /**
+   * The last move that was applied to this board
+   * @return the encoded move, see {@link SimMove}
+   */
+  public int getPreviousMove() {
+    return undoLog[frames[frameCount - 1]];
+  }
+
+  /**
+   * The player who applied the last move. For the outcome of an attack this is the attacker.
+   * @return the id of the player whose turn it was before the last move
+   */
+  public int getPreviousPlayer() {
+    return undoLog[frames[frameCount - 1] + 1];
+  }
+
+  /**
+   * The territory the last attack started from, as it was before the last move
+   * @return the id of the attacking territory, -1 if there is none
+   */
+  public int getPreviousAttackSource() {
+    return frameCount == 0 ? attackSource : undoLog[frames[frameCount - 1] + 6];
+  }
+
+  /**
+   * The territory the last attack was aimed at, as it was before the last move
+   * @return the id of the defending territory, -1 if there is none
+   */
+  public int getPreviousAttackTarget() {
+    return frameCount == 0 ? attackTarget : undoLog[frames[frameCount - 1] + 7];
+  }
+
+  /**
+   * The troops on the given territory before the last move
+   * @param territoryId the territory to check
+   * @return the amount of troops before the last move
+   */
+  public int getPreviousTroops(int territoryId) {
+    return findPreviousValue(TROOPS_CHANGE, territoryId, troops[territoryId]);
+  }
+
+  /**
+   * The player occupying the given territory before the last move
+   * @param territoryId the territory to check
+   * @return the id of the player or a negative value if the territory was not occupied
+   */
+  public int getPreviousOwner(int territoryId) {
+    return findPreviousValue(OWNER_CHANGE, territoryId, owner[territoryId]);
+  }
+
+  /**
+   * Checks if the given territory was occupied by another player than the given one before the last move
+   * @param territoryId the territory to check
+   * @param player the player from whose perspective the territory is checked
+   * @return true if the territory was occupied and did not belong to the given player
+   */
+  public boolean wasEnemyOf(int territoryId, int player) {
+    int previousOwner = getPreviousOwner(territoryId);
+    return previousOwner != player && previousOwner >= 0;
+  }
+
+  private int findPreviousValue(int kind, int index, int currentValue) {
+    if(frameCount == 0)
+      return currentValue;
+    int key = kind << 16 | index;
+    for(int i = frames[frameCount - 1] + FRAME_HEADER; i < undoSize; i += 2) {
+      if(undoLog[i] == key)
+        return undoLog[i + 1];
+    }
+    return currentValue;
+  }
+
+  /**
+   * Checks if the given territory is occupied by another player than the given one
+   * @param territoryId the territory to check
+   * @param player the player from whose perspective the territory is checked
+   * @return true if the territory is occupied and does not belong to the given player
+   */
+  public boolean isEnemyOf(int territoryId, int player) {
+    return owner[territoryId] != player && owner[territoryId] >= 0;
+  }
+
+  /**
+   * Counts the neighbours of the given territory that are occupied by another player than its owner
+   * @param territoryId the territory to check
+   * @return the amount of enemy neighbours
+   */
+  public int countEnemyNeighbors(int territoryId) {
+    return Long.bitCount(bitboard.getEnemyNeighborMask(territoryId, owner[territoryId]));
+  }
+
+  /**
+   * Sums up the troops on the neighbours of the given territory that are occupied by another player than its owner
+   * @param territoryId the territory to check
+   * @return the amount of enemy troops next to the territory
+   */
+  public int getEnemyNeighborTroops(int territoryId) {
+    int total = 0;
+    for(long enemies = bitboard.getEnemyNeighborMask(territoryId, owner[territoryId]); enemies != 0;
+        enemies &= enemies - 1) {
+      total += troops[Long.numberOfTrailingZeros(enemies)];
+    }
+    return total;
+  }
+
+  /**
+   * Counts the territories of a continent that belong to the given player
+   * @param continent the index of the continent
+   * @param player the player to count for
+   * @return the amount of territories of the player on the continent
+   */
+  public int countOwnedOnContinent(int continent, int player) {
+    return continentOwned[continent * playerCount + player];
+  }
+
+  /**
+   * Counts the territories of a continent that belong to other players than the given one
+   * @param continent the index of the continent
+   * @param player the player whose opponents are counted
+   * @return the amount of territories of opponents on the continent
+   */
+  public int countOpponentOwnedOnContinent(int continent, int player) {
+    return continentOccupied[continent] - continentOwned[continent * playerCount + player];
+  }
+
+  /**
+   * The distance of the given territory to the closest territory that does not belong to the perspective of this
+   * board. Territories that do not belong to the perspective have a distance of 0.
+   * @param territoryId the territory to check
+   * @return the amount of borders to the closest enemy, {@link Integer#MAX_VALUE} if there is none
+   */
+  public int getEnemyDistance(int territoryId) {
+    return enemyDistances[territoryId];
+  }
+
+  /**
+   * The reward for occupying the given territory from the view of the perspective of this board,
+   * see {@link TerritoryRewards#get(SimBoard, int)}
+   * @param territoryId the territory to get the reward for
+   * @return the reward for the given territory
+   */
+  public double getTerritoryReward(int territoryId) {
+    return rewards.get(this, territoryId);
+  }
+
+  /**
+   * The player whose distances to enemies are kept by this board
+   * @return the id of the player
+   */
+  public int getPerspective() {
+    return perspective;
+  }
+
+  /**
+   * The topology this board is played on
+   * @return the shared {@link BoardTopology}
+   */
+  public BoardTopology getTopology() {
+    return topology;
+  }
+
+  /**
+   * The owners of all territories as bitmasks, kept up to date with every move
+   * @return the {@link Bitboard} of this board
+   */
+  public Bitboard getBitboard() {
+    return bitboard;
+  }
+
+  /**
+   * The player occupying the given territory
+   * @param territoryId the territory to check
+   * @return the id of the player or a negative value if the territory is not occupied
+   */
+  public int getOwner(int territoryId) {
+    return owner[territoryId];
+  }
+
+  /**
+   * The troops on the given territory
+   * @param territoryId the territory to check
+   * @return the amount of troops
+   */
+  public int getTroops(int territoryId) {
+    return troops[territoryId];
+  }
+
+  /**
+   * The player whose turn it is. While the dice of an attack are pending, this is the attacker.
+   * @return the id of the current player
+   */
+  public int getCurrentPlayer() {
+    return currentPlayer;
+  }
+
+  /**
+   * The phase of the current turn
+   * @return one of the phase constants of {@link SimBoard}
+   */
+  public int getPhase() {
+    return phase;
+  }
+
+  /**
+   * The troops the current player still has to place in the reinforcement phase
+   * @return the amount of troops left to place
+   */
+  public int getReinforcementsLeft() {
+    return reinforcementsLeft;
+  }
+
+  /**
+   * If an attack has been declared whose dice have not been rolled yet
+   * @return true if the dice of an attack are pending
+   */
+  public boolean isAttackPending() {
+    return attackPending;
+  }
+
+  /**
+   * The territory the last attack started from
+   * @return the id of the attacking territory, -1 if there is none
+   */
+  public int getAttackSource() {
+    return attackSource;
+  }
+
+  /**
+   * The territory the last attack was aimed at
+   * @return the id of the defending territory, -1 if there is none
+   */
+  public int getAttackTarget() {
+    return attackTarget;
+  }
+
+  /**
+   * The amount of dice the attacker rolls for the pending attack
+   * @return the troops of the pending attack
+   */
+  public int getAttackerDice() {
+    return attackTroops;
+  }
+
+  /**
+   * The amount of dice the defender rolls for the pending attack
+   * @return the troops of the defending territory, but at most 2
+   */
+  public int getDefenderDice() {
+    return Math.min(MAX_DEFENDING_TROOPS, troops[attackTarget]);
+  }
+
+  /**
+   * The least amount of troops that have to be moved into a conquered territory
+   * @return the minimum for an occupation
+   */
+  public int getOccupyMin() {
+    return Math.max(1, Math.min(attackTroops, getOccupyMax()));
+  }
+
+  /**
+   * The most troops that can be moved into a conquered territory
+   * @return the maximum for an occupation
+   */
+  public int getOccupyMax() {
+    return troops[attackSource] - 1;
+  }
+
+  /**
+   * If there are still territories that are not occupied
+   * @return true if the game is in the initial placing phase
+   */
+  public boolean isInitialPlacingPhase() {
+    return unoccupied > 0;
+  }
+
+  /**
+   * If the given player still takes part in the game
+   * @param player the player to check
+   * @return true if the player still occupies a territory or the initial placing phase is not over
+   */
+  public boolean isPlayerAlive(int player) {
+    return territoriesOwned[player] > 0 || unoccupied > 0;
+  }
+
+  /**
+   * If the game is over
+   * @return true if the game is over
+   */
+  public boolean isGameOver() {
+    return gameOver;
+  }
+}
@@ -0,0 +1,228 @@
+package risk.agent.mc.sim;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import risk.agent.mc.data.ActionCodec;
+
+/**
+ * Encodes the moves of a {@link SimBoard} as a single integer, so simulations do not have to create objects for them.
+ * The type is stored in the highest bits, followed by the source territory, the target territory and the troops.
+ * Territories take 6 bits, as a {@link risk.agent.mc.data.BoardTopology} has at most 64 of them, which leaves 17 bits
+ * for the troops. Troops that do not fit are rejected instead of being cut off.
+ */
+public class SimMove {
+  public static final int REINFORCE = 1;
+  public static final int ATTACK = 2;
+  public static final int OCCUPY = 3;
+  public static final int FORTIFY = 4;
+  public static final int END_PHASE = 5;
+  public static final int CASUALTIES = 6;
+  public static final int CARDS = 7;
+
+  private static final int TYPE_SHIFT = 29;
+  private static final int SOURCE_SHIFT = 23;
+  private static final int TARGET_SHIFT = 17;
+  private static final int FIELD_MASK = 0x3F;
+  private static final int TROOPS_MASK = 0x1FFFF;
+
+  /**
+   * Creates a move that places troops on a territory
+   * @param territoryId the territory to reinforce
+   * @param troops the amount of troops to place
+   * @return the encoded move
+   */
+  public static int reinforce(int territoryId, int troops) {
+    return encode(REINFORCE, 0, territoryId, troops);
+  }
+
+  /**
+   * Creates a move that attacks a territory
+   * @param sourceId the attacking territory
+   * @param targetId the defending territory
+   * @param troops the amount of troops to attack with
+   * @return the encoded move
+   */
+  public static int attack(int sourceId, int targetId, int troops) {
+    return encode(ATTACK, sourceId, targetId, troops);
+  }
+
+  /**
+   * Creates a move that moves troops into a conquered territory
+   * @param troops the amount of troops to move
+   * @return the encoded move
+   */
+  public static int occupy(int troops) {
+    return encode(OCCUPY, 0, 0, troops);
+  }
+
+  /**
+   * Creates a move that moves troops between two territories of the same player
+   * @param sourceId the territory the troops come from
+   * @param targetId the territory the troops go to
+   * @param troops the amount of troops to move
+   * @return the encoded move
+   */
+  public static int fortify(int sourceId, int targetId, int troops) {
+    return encode(FORTIFY, sourceId, targetId, troops);
+  }
+
+  /**
+   * Creates a move that ends the current phase
+   * @return the encoded move
+   */
+  public static int endPhase() {
+    return encode(END_PHASE, 0, 0, 0);
+  }
+
+  /**
+   * Creates a move that represents the outcome of the dice of an attack
+   * @param attackerCasualties the amount of troops the attacker loses
+   * @param defenderCasualties the amount of troops the defender loses
+   * @return the encoded move
+   */
+  public static int casualties(int attackerCasualties, int defenderCasualties) {
+    return encode(CASUALTIES, attackerCasualties, defenderCasualties, 0);
+  }
+
+  /**
+   * Creates a move that trades in cards
+   * @return the encoded move
+   */
+  public static int cards() {
+    return encode(CARDS, 0, 0, 0);
+  }
+
+  /**
+   * Encodes a {@link RiskAction} of the engine. The engine does not distinguish attacks and fortifications,
+   * so the phase the action is executed in has to be given.
+   * @param action the action to encode
+   * @param fortifyPhase true if the action is executed in the fortify phase
+   * @return the encoded move
+   */
+  public static int of(RiskAction action, boolean fortifyPhase) {
+    if(action.isEndPhase())
+      return endPhase();
+    int targetId = action.selected();
+    if(targetId == -1)
+      return casualties(action.attackerCasualties(), action.defenderCasualties());
+    if(targetId == -2)
+      return occupy(action.troops());
+    if(targetId < 0 || action.isCardIds() || action.isBonus())
+      return cards();
+    if(action.attackingId() == -1)
+      return reinforce(targetId, action.troops());
+    return fortifyPhase ? fortify(action.attackingId(), targetId, action.troops())
+            : attack(action.attackingId(), targetId, action.troops());
+  }
+
+  /**
+   * Encodes an action of the search tree given by its code, see {@link ActionCodec}. Only the outcome of dice is looked
+   * up as {@link RiskAction}, all other actions are taken from the code.
+   * @param codec the codec the action was encoded with
+   * @param code the code of the action
+   * @param fortifyPhase true if the action is executed in the fortify phase
+   * @return the encoded move
+   */
+  public static int of(ActionCodec codec, long code, boolean fortifyPhase) {
+    switch(ActionCodec.type(code)) {
+      case ActionCodec.END_PHASE:
+        return endPhase();
+      case ActionCodec.CASUALTIES:
+        return of(codec.decode(code), fortifyPhase);
+      case ActionCodec.OCCUPY:
+        return occupy(ActionCodec.troops(code));
+      case ActionCodec.CARDS:
+        return cards();
+      case ActionCodec.REINFORCE:
+        return reinforce(ActionCodec.target(code), ActionCodec.troops(code));
+      default:
+        return fortifyPhase ? fortify(ActionCodec.source(code), ActionCodec.target(code), ActionCodec.troops(code))
+                : attack(ActionCodec.source(code), ActionCodec.target(code), ActionCodec.troops(code));
+    }
+  }
+
+  /**
+   * The type of the given move
+   * @param move the encoded move
+   * @return one of the type constants of {@link SimMove}
+   */
+  public static int type(int move) {
+    return move >>> TYPE_SHIFT;
+  }
+
+  /**
+   * The territory a move starts from, following the conventions of {@link RiskAction#attackingId()}
+   * @param move the encoded move
+   * @return the id of the source territory or -1 for reinforcements and -2 for moves without a source
+   */
+  public static int source(int move) {
+    switch(type(move)) {
+      case ATTACK:
+      case FORTIFY:
+        return (move >>> SOURCE_SHIFT) & FIELD_MASK;
+      case REINFORCE:
+        return -1;
+      default:
+        return -2;
+    }
+  }
+
+  /**
+   * The territory a move is aimed at, following the conventions of {@link RiskAction#selected()}
+   * @param move the encoded move
+   * @return the id of the target territory or -1 for casualties, -2 for occupations, -3 for cards
+   *         and -4 for the end of a phase
+   */
+  public static int target(int move) {
+    switch(type(move)) {
+      case REINFORCE:
+      case ATTACK:
+      case FORTIFY:
+        return (move >>> TARGET_SHIFT) & FIELD_MASK;
+      case CASUALTIES:
+        return -1;
+      case OCCUPY:
+        return -2;
+      case CARDS:
+        return -3;
+      default:
+        return -4;
+    }
+  }
+
+  /**
+   * The amount of troops of a move
+   * @param move the encoded move
+   * @return the amount of troops
+   */
+  public static int troops(int move) {
+    return move & TROOPS_MASK;
+  }
+
+  /**
+   * The troops the attacker loses in a move of type {@link SimMove#CASUALTIES}
+   * @param move the encoded move
+   * @return the attacker's casualties
+   */
+  public static int attackerCasualties(int move) {
+    return (move >>> SOURCE_SHIFT) & FIELD_MASK;
+  }
+
+  /**
+   * The troops the defender loses in a move of type {@link SimMove#CASUALTIES}
+   * @param move the encoded move
+   * @return the defender's casualties
+   */
+  public static int defenderCasualties(int move) {
+    return (move >>> TARGET_SHIFT) & FIELD_MASK;
+  }
+
+  /**
+   * Packs the fields of a move into an integer
+   * @throws IllegalArgumentException if the troops are negative or do not fit into their bits
+   */
+  private static int encode(int type, int source, int target, int troops) {
+    if(troops < 0 || troops > TROOPS_MASK)
+      throw new IllegalArgumentException("A move cannot hold " + troops + " troops, at most " + TROOPS_MASK);
+    return type << TYPE_SHIFT | (source & FIELD_MASK) << SOURCE_SHIFT | (target & FIELD_MASK) << TARGET_SHIFT | troops;
+  }
+}
@@ -0,0 +1,162 @@
+package risk.agent.mc.sim;
+
+import risk.agent.mc.data.Bitboard;
+import risk.agent.mc.data.BoardTopology;
+import risk.agent.mc.util.RiskActionPruner;
+
+/**
+ * Generates the moves that can be applied to a {@link SimBoard}. The pruned moves follow the same rules as
+ * {@link RiskActionPruner}, but are generated directly from the board instead of filtering the engine's actions.
+ * The simulations draw their moves with {@link SimMoveSampler}, which is tested against the moves generated here.
+ */
+public class SimMoveGenerator {
+
+  /**
+   * Fills the given buffer with the moves of the current player. Nothing is generated while the dice of an attack
+   * are pending, the outcome is rolled with {@link SimBoard#rollCasualties(java.util.Random)} instead.
+   * @param board the board to generate the moves for
+   * @param moves the buffer that is cleared and filled with the moves
+   * @param pruned if true, only the moves that {@link RiskActionPruner#getPrunedActions} would keep are generated.
+   *               Only the moves of the perspective of the board can be pruned.
+   */
+  public static void generate(SimBoard board, MoveBuffer moves, boolean pruned) {
+    moves.clear();
+    if(board.isGameOver() || board.isAttackPending())
+      return;
+    if(board.isInitialPlacingPhase()) {
+      for(int id = 0; id < board.getTopology().getTerritoryCount(); id++) {
+        if(board.getOwner(id) < 0)
+          moves.add(SimMove.reinforce(id, 1));
+      }
+      return;
+    }
+    switch(board.getPhase()) {
+      case SimBoard.REINFORCEMENT:
+        generateReinforcements(board, moves, pruned);
+        break;
+      case SimBoard.ATTACK:
+        generateAttacks(board, moves, pruned);
+        break;
+      case SimBoard.OCCUPY:
+        generateOccupations(board, moves, pruned);
+        break;
+      case SimBoard.FORTIFY:
+        generateFortifications(board, moves, pruned);
+        break;
+    }
+  }
+
+  private static void generateReinforcements(SimBoard board, MoveBuffer moves, boolean pruned) {
+    Bitboard bitboard = board.getBitboard();
+    int player = board.getCurrentPlayer();
+    int troops = Math.max(1, board.getReinforcementsLeft());
+    long territories = bitboard.getOwnerMask(player);
+    if(!pruned) {
+      for(long remaining = territories; remaining != 0; remaining &= remaining - 1) {
+        int id = Long.numberOfTrailingZeros(remaining);
+        for(int amount = 1; amount <= troops; amount++) {
+          moves.add(SimMove.reinforce(id, amount));
+        }
+      }
+      return;
+    }
+    long frontier = 0L;
+    for(long remaining = territories; remaining != 0; remaining &= remaining - 1) {
+      int id = Long.numberOfTrailingZeros(remaining);
+      if(bitboard.getEnemyNeighborMask(id, player) != 0)
+        frontier |= 1L << id;
+    }
+    // only reinforce territories next to an enemy, unless there are none
+    for(long remaining = frontier != 0 ? frontier : territories; remaining != 0; remaining &= remaining - 1) {
+      int id = Long.numberOfTrailingZeros(remaining);
+      moves.add(SimMove.reinforce(id, troops));
+      if(troops / 2 > 0)
+        moves.add(SimMove.reinforce(id, troops / 2));
+    }
+  }
+
+  private static void generateAttacks(SimBoard board, MoveBuffer moves, boolean pruned) {
+    Bitboard bitboard = board.getBitboard();
+    int player = board.getCurrentPlayer();
+    for(long sources = bitboard.getOwnerMask(player); sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      int maxTroops = Math.min(3, board.getTroops(source) - 1);
+      for(long targets = bitboard.getEnemyNeighborMask(source, player); targets != 0; targets &= targets - 1) {
+        int target = Long.numberOfTrailingZeros(targets);
+        if(!pruned) {
+          for(int amount = 1; amount <= maxTroops; amount++) {
+            moves.add(SimMove.attack(source, target, amount));
+          }
+        } else {
+          if(board.getTroops(target) < maxTroops)
+            moves.add(SimMove.attack(source, target, maxTroops));
+          if(maxTroops / 2 > 0 && board.getTroops(target) < maxTroops / 2)
+            moves.add(SimMove.attack(source, target, maxTroops / 2));
+        }
+      }
+    }
+    if(pruned && moves.size() == 0) {
+      // only the end of the phase is left, allow attacks with a clear superiority of troops
+      for(long sources = bitboard.getOwnerMask(player); sources != 0; sources &= sources - 1) {
+        int source = Long.numberOfTrailingZeros(sources);
+        if(board.getTroops(source) < 2)
+          continue;
+        int maxTroops = Math.min(3, board.getTroops(source) - 1);
+        for(long targets = bitboard.getEnemyNeighborMask(source, player); targets != 0; targets &= targets - 1) {
+          int target = Long.numberOfTrailingZeros(targets);
+          if(board.getTroops(source) - 3 > board.getTroops(target)) {
+            moves.add(SimMove.attack(source, target, maxTroops));
+            if(maxTroops / 2 > 0)
+              moves.add(SimMove.attack(source, target, maxTroops / 2));
+          }
+        }
+      }
+    }
+    if(!pruned || moves.size() == 0)
+      moves.add(SimMove.endPhase());
+  }
+
+  private static void generateOccupations(SimBoard board, MoveBuffer moves, boolean pruned) {
+    int min = board.getOccupyMin();
+    int max = Math.max(min, board.getOccupyMax());
+    if(!pruned) {
+      for(int amount = min; amount <= max; amount++) {
+        moves.add(SimMove.occupy(amount));
+      }
+      return;
+    }
+    moves.add(SimMove.occupy(max));
+    if(max / 2 >= min && max / 2 != max)
+      moves.add(SimMove.occupy(max / 2));
+  }
+
+  private static void generateFortifications(SimBoard board, MoveBuffer moves, boolean pruned) {
+    BoardTopology topology = board.getTopology();
+    int player = board.getCurrentPlayer();
+    int grouped = 0;
+    long territories = board.getBitboard().getOwnerMask(player);
+    for(long sources = territories; sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      int maxTroops = board.getTroops(source) - 1;
+      for(long targets = topology.getNeighborMask(source) & territories; targets != 0; targets &= targets - 1) {
+        int target = Long.numberOfTrailingZeros(targets);
+        if(!pruned) {
+          for(int amount = 1; amount <= maxTroops; amount++) {
+            moves.add(SimMove.fortify(source, target, amount));
+          }
+          continue;
+        }
+        grouped += maxTroops / 2 > 0 ? 2 : 1;
+        if(board.getEnemyDistance(source) > board.getEnemyDistance(target))
+          moves.add(SimMove.fortify(source, target, maxTroops));
+      }
+    }
+    // like the pruner, keep the end of the phase unless some but not all grouped fortifications were removed
+    if(!pruned || moves.size() == 0 || moves.size() == grouped)
+      moves.add(SimMove.endPhase());
+  }
+}
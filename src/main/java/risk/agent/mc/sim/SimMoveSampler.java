@@ -0,0 +1,229 @@
+package risk.agent.mc.sim;
+
+import risk.agent.mc.data.Bitboard;
+import risk.agent.mc.data.BoardTopology;
+
+import java.util.Random;
+
+/**
+ * Draws a single random move from a {@link SimBoard} without generating all of its moves.
+ * Every move that {@link SimMoveGenerator#generate(SimBoard, MoveBuffer, boolean)} would generate is drawn with the
+ * same probability. The moves are grouped by the territory they start from: a first pass over the territories of the
+ * current player counts the moves of every group, a second pass finds the group of the drawn index and builds the
+ * move from the position inside the group.
+ */
+public class SimMoveSampler {
+
+  /**
+   * Returned if there is no move to draw
+   */
+  public static final int NO_MOVE = -1;
+
+  /**
+   * Draws a random move of the current player. Nothing is drawn while the dice of an attack are pending, the outcome is
+   * rolled with {@link SimBoard#rollCasualties(Random)} instead.
+   * @param board the board to draw the move from
+   * @param random the random number generator to use
+   * @param pruned if true, the move is drawn from the pruned moves of {@link SimMoveGenerator}
+   * @return the encoded move, see {@link SimMove}, or {@link SimMoveSampler#NO_MOVE} if there is none
+   */
+  public static int sample(SimBoard board, Random random, boolean pruned) {
+    if(board.isGameOver() || board.isAttackPending())
+      return NO_MOVE;
+    if(board.isInitialPlacingPhase()) {
+      long free = board.getTopology().getTerritoryMask() & ~board.getBitboard().getOccupiedMask();
+      return SimMove.reinforce(nthTerritory(free, random.nextInt(Long.bitCount(free))), 1);
+    }
+    switch(board.getPhase()) {
+      case SimBoard.REINFORCEMENT:
+        return sampleReinforcement(board, random, pruned);
+      case SimBoard.ATTACK:
+        return pruned ? samplePrunedAttack(board, random) : sampleAttack(board, random);
+      case SimBoard.OCCUPY:
+        return sampleOccupation(board, random, pruned);
+      case SimBoard.FORTIFY:
+        return pruned ? samplePrunedFortification(board, random) : sampleFortification(board, random);
+      default:
+        return NO_MOVE;
+    }
+  }
+
+  private static int sampleReinforcement(SimBoard board, Random random, boolean pruned) {
+    Bitboard bitboard = board.getBitboard();
+    int player = board.getCurrentPlayer();
+    int troops = Math.max(1, board.getReinforcementsLeft());
+    long territories = bitboard.getOwnerMask(player);
+    if(!pruned) {
+      int id = nthTerritory(territories, random.nextInt(Long.bitCount(territories)));
+      return SimMove.reinforce(id, 1 + random.nextInt(troops));
+    }
+    long frontier = 0L;
+    for(long remaining = territories; remaining != 0; remaining &= remaining - 1) {
+      int id = Long.numberOfTrailingZeros(remaining);
+      if(bitboard.getEnemyNeighborMask(id, player) != 0)
+        frontier |= 1L << id;
+    }
+    long candidates = frontier != 0 ? frontier : territories;
+    int id = nthTerritory(candidates, random.nextInt(Long.bitCount(candidates)));
+    // every territory has the same amounts, so the amount can be drawn on its own
+    return troops / 2 > 0 && random.nextBoolean() ? SimMove.reinforce(id, troops / 2) : SimMove.reinforce(id, troops);
+  }
+
+  private static int sampleAttack(SimBoard board, Random random) {
+    Bitboard bitboard = board.getBitboard();
+    int player = board.getCurrentPlayer();
+    int total = 1;
+    for(long sources = bitboard.getOwnerMask(player); sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) >= 2)
+        total += Long.bitCount(bitboard.getEnemyNeighborMask(source, player)) * Math.min(3, board.getTroops(source) - 1);
+    }
+    int index = random.nextInt(total);
+    for(long sources = bitboard.getOwnerMask(player); sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      int maxTroops = Math.min(3, board.getTroops(source) - 1);
+      long targets = bitboard.getEnemyNeighborMask(source, player);
+      int moves = Long.bitCount(targets) * maxTroops;
+      if(index < moves)
+        return SimMove.attack(source, nthTerritory(targets, index / maxTroops), 1 + index % maxTroops);
+      index -= moves;
+    }
+    return SimMove.endPhase();
+  }
+
+  private static int samplePrunedAttack(SimBoard board, Random random) {
+    int total = countPrunedAttacks(board, false);
+    boolean superiorOnly = total == 0;
+    if(superiorOnly)
+      total = countPrunedAttacks(board, true);
+    if(total == 0)
+      return SimMove.endPhase();
+    int index = random.nextInt(total);
+    Bitboard bitboard = board.getBitboard();
+    int player = board.getCurrentPlayer();
+    for(long sources = bitboard.getOwnerMask(player); sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      for(long targets = bitboard.getEnemyNeighborMask(source, player); targets != 0; targets &= targets - 1) {
+        int target = Long.numberOfTrailingZeros(targets);
+        int moves = countPrunedAttacks(board, source, target, superiorOnly);
+        if(index < moves) {
+          int maxTroops = Math.min(3, board.getTroops(source) - 1);
+          // the amounts are ordered like in the generator, the full amount comes first if it is allowed
+          boolean fullAllowed = superiorOnly || board.getTroops(target) < maxTroops;
+          return SimMove.attack(source, target, index == 0 && fullAllowed ? maxTroops : maxTroops / 2);
+        }
+        index -= moves;
+      }
+    }
+    return SimMove.endPhase();
+  }
+
+  private static int countPrunedAttacks(SimBoard board, boolean superiorOnly) {
+    Bitboard bitboard = board.getBitboard();
+    int player = board.getCurrentPlayer();
+    int total = 0;
+    for(long sources = bitboard.getOwnerMask(player); sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      for(long targets = bitboard.getEnemyNeighborMask(source, player); targets != 0; targets &= targets - 1) {
+        total += countPrunedAttacks(board, source, Long.numberOfTrailingZeros(targets), superiorOnly);
+      }
+    }
+    return total;
+  }
+
+  /**
+   * The amount of pruned attacks from one territory to another, see {@link SimMoveGenerator}
+   */
+  private static int countPrunedAttacks(SimBoard board, int source, int target, boolean superiorOnly) {
+    int maxTroops = Math.min(3, board.getTroops(source) - 1);
+    if(superiorOnly)
+      return board.getTroops(source) - 3 > board.getTroops(target) ? (maxTroops / 2 > 0 ? 2 : 1) : 0;
+    int moves = board.getTroops(target) < maxTroops ? 1 : 0;
+    if(maxTroops / 2 > 0 && board.getTroops(target) < maxTroops / 2)
+      moves++;
+    return moves;
+  }
+
+  private static int sampleOccupation(SimBoard board, Random random, boolean pruned) {
+    int min = board.getOccupyMin();
+    int max = Math.max(min, board.getOccupyMax());
+    if(!pruned)
+      return SimMove.occupy(min + random.nextInt(max - min + 1));
+    if(max / 2 >= min && max / 2 != max && random.nextBoolean())
+      return SimMove.occupy(max / 2);
+    return SimMove.occupy(max);
+  }
+
+  private static int sampleFortification(SimBoard board, Random random) {
+    BoardTopology topology = board.getTopology();
+    long territories = board.getBitboard().getOwnerMask(board.getCurrentPlayer());
+    int total = 1;
+    for(long sources = territories; sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) >= 2)
+        total += Long.bitCount(topology.getNeighborMask(source) & territories) * (board.getTroops(source) - 1);
+    }
+    int index = random.nextInt(total);
+    for(long sources = territories; sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      int maxTroops = board.getTroops(source) - 1;
+      long targets = topology.getNeighborMask(source) & territories;
+      int moves = Long.bitCount(targets) * maxTroops;
+      if(index < moves)
+        return SimMove.fortify(source, nthTerritory(targets, index / maxTroops), 1 + index % maxTroops);
+      index -= moves;
+    }
+    return SimMove.endPhase();
+  }
+
+  private static int samplePrunedFortification(SimBoard board, Random random) {
+    BoardTopology topology = board.getTopology();
+    long territories = board.getBitboard().getOwnerMask(board.getCurrentPlayer());
+    int kept = 0, grouped = 0;
+    for(long sources = territories; sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      int maxTroops = board.getTroops(source) - 1;
+      for(long targets = topology.getNeighborMask(source) & territories; targets != 0; targets &= targets - 1) {
+        grouped += maxTroops / 2 > 0 ? 2 : 1;
+        if(board.getEnemyDistance(source) > board.getEnemyDistance(Long.numberOfTrailingZeros(targets)))
+          kept++;
+      }
+    }
+    // like the generator, the end of the phase is kept unless some but not all grouped fortifications were removed
+    boolean endPhase = kept == 0 || kept == grouped;
+    int index = random.nextInt(kept + (endPhase ? 1 : 0));
+    if(index == kept)
+      return SimMove.endPhase();
+    for(long sources = territories; sources != 0; sources &= sources - 1) {
+      int source = Long.numberOfTrailingZeros(sources);
+      if(board.getTroops(source) < 2)
+        continue;
+      for(long targets = topology.getNeighborMask(source) & territories; targets != 0; targets &= targets - 1) {
+        int target = Long.numberOfTrailingZeros(targets);
+        if(board.getEnemyDistance(source) > board.getEnemyDistance(target) && index-- == 0)
+          return SimMove.fortify(source, target, board.getTroops(source) - 1);
+      }
+    }
+    return SimMove.endPhase();
+  }
+
+  /**
+   * The territory of the n-th set bit of the given mask, counted from the lowest territory id
+   */
+  private static int nthTerritory(long mask, int n) {
+    for(int i = 0; i < n; i++) {
+      mask &= mask - 1;
+    }
+    return Long.numberOfTrailingZeros(mask);
+  }
+}
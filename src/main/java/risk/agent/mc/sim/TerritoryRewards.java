@@ -0,0 +1,149 @@
+package risk.agent.mc.sim;
+
+import risk.agent.mc.data.BoardTopology;
+import risk.agent.mc.data.RewardFactors;
+
+/**
+ * Keeps the reward for occupying each territory of a {@link SimBoard} from the view of one player, its perspective.
+ * The parts of a reward that only depend on the owners of the territories are kept in an array and updated whenever a
+ * territory changes its owner. Only the territories of its continent, the territory itself and its neighbours are
+ * touched by such an update. The parts that depend on the troops or the current player change with nearly every move
+ * and are added when a reward is read.
+ */
+public class TerritoryRewards {
+
+  private final BoardTopology topology;
+  private final int perspective;
+  private final double[] continentBaseRewards;
+  /**
+   * The rewards for transitions and their neighbours, they never change during a game
+   */
+  private final double[] fixedRewards;
+  private final double[] ownershipRewards;
+
+  /**
+   * Creates the rewards for the given topology. {@link TerritoryRewards#reset(SimBoard)} has to be called before the
+   * rewards can be read.
+   * @param topology the {@link BoardTopology} of the game
+   * @param perspective the player the rewards are calculated for
+   * @param continentBaseRewards the base reward of each continent, indexed like the continents of the topology
+   */
+  public TerritoryRewards(BoardTopology topology, int perspective, double[] continentBaseRewards) {
+    this(topology, perspective, continentBaseRewards, createFixedRewards(topology));
+  }
+
+  private TerritoryRewards(BoardTopology topology, int perspective, double[] continentBaseRewards,
+                           double[] fixedRewards) {
+    this.topology = topology;
+    this.perspective = perspective;
+    this.continentBaseRewards = continentBaseRewards;
+    this.fixedRewards = fixedRewards;
+    this.ownershipRewards = new double[topology.getTerritoryCount()];
+  }
+
+  private static double[] createFixedRewards(BoardTopology topology) {
+    double[] rewards = new double[topology.getTerritoryCount()];
+    for(int id = 0; id < topology.getTerritoryCount(); id++) {
+      if(topology.isTransition(id)) {
+        rewards[id] += RewardFactors.TRANSITION_REWARD_FACTOR;
+        //all neighbouring territories get reward since they are one territory away from a transition
+        for(int i = 0; i < topology.getNeighborCount(id); i++) {
+          rewards[topology.getNeighbor(id, i)] += RewardFactors.TRANSITION_NEIGHBOR_REWARD_FACTOR;
+        }
+      }
+    }
+    return rewards;
+  }
+
+  /**
+   * Creates a copy of these rewards. The topology and the fixed rewards are shared, the rewards that depend on the
+   * owners are copied.
+   * @return new rewards with the same values
+   */
+  public TerritoryRewards copy() {
+    TerritoryRewards copy = new TerritoryRewards(topology, perspective, continentBaseRewards, fixedRewards);
+    copy.copyFrom(this);
+    return copy;
+  }
+
+  /**
+   * Overwrites the rewards with the ones of the given rewards, which must have the same topology and perspective
+   * @param other the rewards to copy
+   */
+  public void copyFrom(TerritoryRewards other) {
+    System.arraycopy(other.ownershipRewards, 0, ownershipRewards, 0, ownershipRewards.length);
+  }
+
+  /**
+   * Calculates the rewards of all territories from scratch
+   * @param board the board whose owners the rewards are based on
+   */
+  public void reset(SimBoard board) {
+    for(int id = 0; id < topology.getTerritoryCount(); id++) {
+      ownershipRewards[id] = calculateOwnershipReward(board, id);
+    }
+  }
+
+  /**
+   * Updates the rewards after the owner of the given territory changed. The reward of a continent depends on the
+   * amount of territories the perspective owns on it, the reward for being near enemies on the owners of the
+   * neighbours.
+   * @param board the board after the change
+   * @param territoryId the territory that changed its owner
+   */
+  public void update(SimBoard board, int territoryId) {
+    int continent = topology.getContinentOf(territoryId);
+    for(int i = 0; i < topology.getContinentSize(continent); i++) {
+      int member = topology.getContinentMember(continent, i);
+      ownershipRewards[member] = calculateOwnershipReward(board, member);
+    }
+    for(int i = 0; i < topology.getNeighborCount(territoryId); i++) {
+      int neighbor = topology.getNeighbor(territoryId, i);
+      if(topology.getContinentOf(neighbor) != continent)
+        ownershipRewards[neighbor] = calculateOwnershipReward(board, neighbor);
+    }
+  }
+
+  private double calculateOwnershipReward(SimBoard board, int territoryId) {
+    int continent = topology.getContinentOf(territoryId);
+    int occupied = board.countOwnedOnContinent(continent, perspective);
+    if(occupied == 0)
+      return 0.d;
+    double baseReward = continentBaseRewards[continent];
+    //prioritize continents we already have some territories in
+    double continentReward = baseReward + RewardFactors.OCCUPIED_CONTINENT_REWARD_FACTOR + occupied
+            * RewardFactors.OCCUPIED_CONTINENT_ADDITIONAL_FOR_EACH_TERRITORY_ALREADY_OCCUPIED_REWARD_FACTOR * baseReward;
+    double reward = RewardFactors.CONTINENT_REWARD_FACTOR * continentReward;
+    int neighboringEnemyTerritories = board.countEnemyNeighbors(territoryId);
+    if(neighboringEnemyTerritories > 0 && neighboringEnemyTerritories < 3)
+      reward += RewardFactors.NEAR_ENEMY_REWARD_FACTOR;
+    return reward;
+  }
+
+  /**
+   * The reward for occupying the given territory in the current state of the board. Besides the kept rewards, a
+   * territory gets a reward for every neighbour on its continent that is the last enemy territory there and has less
+   * troops, and a reward if it is the last territory on a continent of enemies while it is the turn of the perspective.
+   * @param board the board the rewards are kept for
+   * @param territoryId the territory to get the reward for
+   * @return the reward for the given territory
+   */
+  public double get(SimBoard board, int territoryId) {
+    double reward = fixedRewards[territoryId] + ownershipRewards[territoryId];
+    int continent = topology.getContinentOf(territoryId);
+    int others = topology.getContinentSize(continent) - 1;
+    if(!board.isInitialPlacingPhase() && board.countOwnedOnContinent(continent, perspective) == others) {
+      //only one territory of the continent is not ours, reward if it is a neighbour with less troops
+      for(int i = 0; i < topology.getNeighborCount(territoryId); i++) {
+        int neighbor = topology.getNeighbor(territoryId, i);
+        if(topology.getContinentOf(neighbor) == continent && board.getOwner(neighbor) != perspective
+                && board.getTroops(neighbor) < board.getTroops(territoryId))
+          reward += RewardFactors.MORE_TROOPS_NEAR_LAST_ENEMY_TERRITORY;
+      }
+    }
+    if(board.getCurrentPlayer() == perspective && board.countOpponentOwnedOnContinent(continent, perspective) == others
+            && !board.isEnemyOf(territoryId, perspective))
+      reward += RewardFactors.LAST_ON_ENEMY_CONTINENT_REWARD_FACTOR;
+    return reward;
+  }
+}
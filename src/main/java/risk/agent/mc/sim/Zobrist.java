@@ -0,0 +1,74 @@
+package risk.agent.mc.sim;
+
+/**
+ * The keys of the Zobrist hash of a {@link SimBoard}. The hash of a board is the xor of the keys of the owner and the
+ * troops of every territory and a key for the turn information, so it can be updated with two keys whenever a single
+ * territory changes.
+ * Troops have no upper bound, so instead of tables of random numbers the keys are derived by mixing the territory and
+ * the value, which gives the same key for the same inputs on every board.
+ */
+public class Zobrist {
+
+  private static final long OWNER_SEED = 0x6A09E667F3BCC908L;
+  private static final long TROOPS_SEED = 0xBB67AE8584CAA73BL;
+  private static final long TURN_SEED = 0x3C6EF372FE94F82BL;
+  private static final long CONQUERED_SEED = 0xA54FF53A5F1D36F1L;
+  private static final long CARDS_SEED = 0x510E527FADE682D1L;
+
+  /**
+   * The key of a territory being owned by a player
+   * @param territoryId the id of the territory
+   * @param player the owner of the territory, -1 if it is not occupied
+   * @return the key of the owner
+   */
+  public static long owner(int territoryId, int player) {
+    return mix(OWNER_SEED ^ ((long) territoryId << 32 | (player + 1)));
+  }
+
+  /**
+   * The key of an amount of troops on a territory
+   * @param territoryId the id of the territory
+   * @param troops the troops on the territory
+   * @return the key of the troops
+   */
+  public static long troops(int territoryId, int troops) {
+    return mix(TROOPS_SEED ^ ((long) territoryId << 32 | (troops & 0xFFFFFFFFL)));
+  }
+
+  /**
+   * The key of the turn information of a board
+   * @param currentPlayer the player whose turn it is
+   * @param phase the phase of the turn, see {@link SimBoard}
+   * @param reinforcementsLeft the troops left to place in the reinforcement phase
+   * @param attackSource the territory of the pending or last attack, -1 if there is none
+   * @param attackTarget the territory attacked by the pending or last attack, -1 if there is none
+   * @param attackTroops the troops of the pending or last attack
+   * @param attackPending if the dice of the attack have not been rolled yet
+   * @param conquered if the current player conquered a territory this turn and gets a card at its end
+   * @param cards the cards of every player
+   * @return the key of the turn
+   */
+  public static long turn(int currentPlayer, int phase, int reinforcementsLeft, int attackSource, int attackTarget,
+                          int attackTroops, boolean attackPending, boolean conquered, int[] cards) {
+    long key = mix(TURN_SEED ^ ((long) currentPlayer << 40 | (long) phase << 32 | (reinforcementsLeft & 0xFFFFFFFFL)));
+    if(attackPending || phase == SimBoard.OCCUPY)
+      key = mix(key ^ ((long) (attackSource & 0xFFF) << 44 | (long) (attackTarget & 0xFFF) << 32
+              | (attackTroops & 0xFFFFFFFFL)) ^ (attackPending ? 1L : 0L) << 63);
+    if(conquered)
+      key = mix(key ^ CONQUERED_SEED);
+    for(int player = 0; player < cards.length; player++) {
+      if(cards[player] != 0)
+        key ^= mix(CARDS_SEED ^ ((long) player << 32 | (cards[player] & 0xFFFFFFFFL)));
+    }
+    return key;
+  }
+
+  /**
+   * The finalizer of SplitMix64, spreads every input bit over the whole key
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+    return value ^ (value >>> 31);
+  }
+}
@@ -3,26 +3,45 @@ package risk.agent.mc;
 import at.ac.tuwien.ifs.sge.agent.AbstractGameAgent;
 import at.ac.tuwien.ifs.sge.agent.GameAgent;
 import at.ac.tuwien.ifs.sge.engine.Logger;
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
 import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
-import at.ac.tuwien.ifs.sge.game.risk.board.RiskTerritory;
+import risk.agent.mc.data.ActionCodec;
+import risk.agent.mc.data.BoardTopology;
 import risk.agent.mc.data.Continent;
 import risk.agent.mc.data.RewardFactors;
+import risk.agent.mc.data.SearchSettings;
 import risk.agent.mc.log.EventLogService;
+import risk.agent.mc.mcts.SearchContext;
+import risk.agent.mc.mcts.SearchMode;
 import risk.agent.mc.mcts.UCBLogic;
-import risk.agent.mc.mcts.UCBNode;
+import risk.agent.mc.mcts.NodeArena;
+import risk.agent.mc.sim.SimBoard;
+import risk.agent.mc.sim.SimMove;
+import risk.agent.mc.sim.SimMoveSampler;
+import risk.agent.mc.util.ActionPriors;
+import risk.agent.mc.util.ReinforcementPlanner;
 import risk.agent.mc.util.RiskActionPruner;
 import risk.agent.mc.util.RiskUtils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * Trisker is a Risk game agent for the course 188.981 VU Strategy Game Programming summer term 2025.
@@ -33,9 +52,21 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
 
   private HashMap<Integer, Continent> continents = null;
   private boolean isFirstRound = true;
-  private final HashSet<Integer> opponentIds = new HashSet<>();
-  private int proportion = 0;
+  private BoardTopology topology = null;
+  private SimBoard simBoard = null;
+  private final ThreadLocal<SearchContext> rolloutContexts =
+          ThreadLocal.withInitial(() -> new SearchContext(ThreadLocalRandom.current(), () -> false));
   private final int TOTAL_RUNS_PER_ROUND = 1400;
+  private ExecutorService workers = null;
+  private ForkJoinPool rolloutPool = null;
+  private final List<NodeArena> previousTrees = new ArrayList<>();
+  private int previousRecordCount = -1;
+  private ExecutorService ponderer = null;
+  private Future<?> ponderSearch = null;
+  private volatile boolean pondering = false;
+  private int evictedSubtrees = 0;
+  private final Deque<RiskAction> plannedActions = new ArrayDeque<>();
+  private final ActionCodec codec = new ActionCodec();
 
 
   public tu_sgp_Trisker_AI(Logger log){
@@ -47,6 +78,28 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
     RiskUtils.initialize(playerId);
     super.setUp(numberOfPlayers, playerId);
     EventLogService.reset();
+    previousTrees.clear();
+    previousRecordCount = -1;
+    plannedActions.clear();
+    codec.clear();
+    if(rolloutPool == null && SearchSettings.SEARCH_MODE == SearchMode.LEAF_PARALLEL) {
+      rolloutPool = new ForkJoinPool(SearchSettings.WORKER_THREADS);
+    }
+    if(workers == null && (SearchSettings.SEARCH_MODE == SearchMode.ROOT_PARALLEL
+            || SearchSettings.SEARCH_MODE == SearchMode.TREE_PARALLEL)) {
+      workers = Executors.newFixedThreadPool(SearchSettings.WORKER_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "trisker-search");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    if(ponderer == null && SearchSettings.PONDERING) {
+      ponderer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "trisker-ponder");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
   }
 
   /**
@@ -56,10 +109,19 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
   private void ownSetup(Risk game)  {
     continents = createContinentsWithAllTerritories(game.getBoard());
     createRewardsByContinent();
+    topology = new BoardTopology(game.getBoard());
+    RiskUtils.setTopology(topology);
+    double[] continentBaseRewards = new double[topology.getContinentCount()];
+    for(int c = 0; c < topology.getContinentCount(); c++) {
+      continentBaseRewards[c] = continents.get(topology.getContinentId(c)).getBaseReward();
+    }
+    simBoard = SimBoard.create(game, topology, numberOfPlayers, playerId, continentBaseRewards);
   }
 
   /**
    * Houses the MCTS computations.
+   * If the search chooses a macro action, its first part is returned and the other parts are returned by the next
+   * calls without searching again, as long as they are still possible.
    * @param game the game state to calculate the next action from
    * @param computationTime the time the agent has to compute the next action
    * @param timeUnit the timeunit of computationTime
@@ -70,42 +132,40 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
                              long computationTime,
                              TimeUnit timeUnit){
     try {
+      stopPondering();
       EventLogService.logBoard("ENEMY", game);
       if(isFirstRound){
         isFirstRound = false;
         ownSetup(game);
       }
+      RiskUtils.updatePhase(game);
+      RiskAction plannedAction = pollPlannedAction(game);
+      if(plannedAction != null) {
+        EventLogService.logBoard("OWN", (Risk) ((Risk) game.doAction(plannedAction)).getGame());
+        return plannedAction;
+      }
       super.setTimers(computationTime, timeUnit);
-      UCBNode root = startMCSTree(game);
-      UCBLogic.expandAll(root, RiskActionPruner.getPrunedActions(game));
-      proportion = root.getChildren().size();
-      UCBNode node = root;
-      while(!shouldStopComputation()) {
-        if(node.getVisits() == 0 && node.getChildren().isEmpty()) {
-          double value = startSimulation(node);
-
-          UCBLogic.backpropagate(node, value);
-          node = root;
-
-          EventLogService.logTree(root);
-        } else if (node.getChildren().isEmpty()) {
-          UCBLogic.expandAll(node, RiskActionPruner.getPrunedActions(node.getState()));
-          proportion = node.getChildren().size();
-          node = UCBLogic.selectBest(node);
-          double value = startSimulation(node);
-
-          UCBLogic.backpropagate(node, value);
-          node = root;
-
-          EventLogService.logTree(root);
-        } else {
-          node = UCBLogic.selectBest(node);
-        }
+      List<NodeArena> trees = new ArrayList<>();
+      int treeCount = SearchSettings.SEARCH_MODE == SearchMode.ROOT_PARALLEL ? SearchSettings.WORKER_THREADS : 1;
+      for(int i = 0; i < treeCount; i++) {
+        Risk state = treeCount == 1 ? game : new Risk(game);
+        NodeArena reused = i < previousTrees.size() ? reuseTree(previousTrees.get(i), state) : null;
+        trees.add(reused != null ? reused : startMCSTree(state));
       }
-      UCBNode bestNode = UCBLogic.selectBest(root);
-      RiskAction bestAction = bestNode.getRiskAction();
-
-      EventLogService.logBoard("OWN", (Risk) game.doAction(bestAction).getGame());
+      runSearch(trees, this::shouldStopComputation);
+      logSearchStatistics(trees);
+      NodeArena tree = trees.size() == 1 ? trees.get(0) : UCBLogic.mergeRoots(game, trees);
+      long bestCode = tree.getAction(UCBLogic.selectMostVisited(tree, NodeArena.ROOT));
+      RiskAction bestAction = codec.decode(codec.part(bestCode, 0));
+
+      Risk gameAfter = (Risk) game.doAction(bestAction);
+      EventLogService.logBoard("OWN", (Risk) gameAfter.getGame());
+      for(int i = 1; i < codec.partCount(bestCode); i++) {
+        RiskAction part = codec.decode(codec.part(bestCode, i));
+        plannedActions.add(part);
+        gameAfter = (Risk) gameAfter.doAction(part);
+      }
+      keepTrees(trees, bestCode, gameAfter);
       return bestAction;
     } catch (Exception ex) {
       ex.printStackTrace();
@@ -114,90 +174,471 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
   }
 
   /**
-   * Creates a new root for an MCTS-Tree.
+   * Takes the next part of the macro action the agent chose last, see {@link SearchSettings#MACRO_REINFORCEMENTS}.
+   * If the part is no longer possible in the given game state, the rest of the macro action is dropped.
+   * @param game the current game state
+   * @return the next part or null if the agent has to search for its next action
+   */
+  private RiskAction pollPlannedAction(Risk game) {
+    RiskAction plannedAction = plannedActions.poll();
+    if(plannedAction != null && !game.getPossibleActions().contains(plannedAction)) {
+      plannedActions.clear();
+      return null;
+    }
+    return plannedAction;
+  }
+
+  /**
+   * Searches all given trees until the stop condition is met. Each worker has its own {@link Random}.
+   * In {@link SearchMode#TREE_PARALLEL} every tree is searched by all workers at once, otherwise each tree is searched
+   * by a single worker. In {@link SearchMode#SEQUENTIAL} and {@link SearchMode#LEAF_PARALLEL} the tree is searched on
+   * the calling thread.
+   * Whenever a tree exceeds its share of the memory budget, see {@link SearchSettings#MAX_TREE_NODES} and
+   * {@link SearchSettings#MAX_TREE_BYTES}, all workers stop, the least visited subtrees of the tree are evicted and
+   * the search continues.
+   * @param trees the trees to search
+   * @param stopCondition returns true as soon as the search should stop
+   */
+  private void runSearch(List<NodeArena> trees, BooleanSupplier stopCondition) {
+    for(NodeArena tree : trees) {
+      if(tree.tryClaimExpansion(NodeArena.ROOT)) {
+        expand(tree, NodeArena.ROOT, tree.getState(NodeArena.ROOT), simBoard.copy());
+      }
+    }
+    int maxNodes = SearchSettings.MAX_TREE_NODES / trees.size();
+    long maxBytes = SearchSettings.MAX_TREE_BYTES / trees.size();
+    BooleanSupplier pause = () -> stopCondition.getAsBoolean() || isOverBudget(trees, maxNodes, maxBytes);
+    while(true) {
+      searchAll(trees, pause);
+      if(stopCondition.getAsBoolean()) {
+        return;
+      }
+      for(NodeArena tree : trees) {
+        if(isOverBudget(tree, maxNodes, maxBytes)) {
+          evictedSubtrees += tree.evict(maxNodes, maxBytes);
+        }
+      }
+      if(isOverBudget(trees, maxNodes, maxBytes)) {
+        //nothing is left to evict, searching further would only stop right away again
+        return;
+      }
+    }
+  }
+
+  /**
+   * If any of the given trees has reached the given budget
+   * @param trees the trees to check
+   * @param maxNodes the maximum amount of nodes of each tree
+   * @param maxBytes the maximum estimated memory of each tree
+   * @return true if at least one tree has to be evicted, false if not
+   */
+  private boolean isOverBudget(List<NodeArena> trees, int maxNodes, long maxBytes) {
+    for(NodeArena tree : trees) {
+      if(isOverBudget(tree, maxNodes, maxBytes)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * If the given tree has reached the given budget
+   * @param tree the tree to check
+   * @param maxNodes the maximum amount of nodes of the tree
+   * @param maxBytes the maximum estimated memory of the tree
+   * @return true if the tree has to be evicted, false if not
+   */
+  private boolean isOverBudget(NodeArena tree, int maxNodes, long maxBytes) {
+    return tree.size() >= maxNodes || tree.getEstimatedBytes() >= maxBytes;
+  }
+
+  /**
+   * Runs the workers on all given trees until the stop condition is met and waits for all of them to finish
+   * @param trees the trees to search
+   * @param stopCondition returns true as soon as the workers should stop
+   */
+  private void searchAll(List<NodeArena> trees, BooleanSupplier stopCondition) {
+    if(workers == null) {
+      for(NodeArena tree : trees) {
+        search(tree, new SearchContext(random, stopCondition));
+      }
+      return;
+    }
+    int workersPerTree = SearchSettings.SEARCH_MODE == SearchMode.TREE_PARALLEL ? SearchSettings.WORKER_THREADS : 1;
+    List<Future<?>> running = new ArrayList<>();
+    for(NodeArena tree : trees) {
+      for(int i = 0; i < workersPerTree; i++) {
+        SearchContext context = new SearchContext(new Random(random.nextLong()), stopCondition);
+        running.add(workers.submit(() -> search(tree, context)));
+      }
+    }
+    try {
+      for(Future<?> future : running) {
+        future.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException("A search worker failed", ex.getCause());
+    }
+  }
+
+  /**
+   * Runs the select, expand, simulate and backpropagate loop of MCTS on a single tree until the worker should stop.
+   * Multiple workers may search the same tree at once. Every node a worker selects gets a virtual loss until the
+   * worker has backpropagated, and only one worker expands a node while the others select again.
+   * The root has to be expanded already.
+   * @param tree the tree to search
+   * @param context the {@link SearchContext} of the worker running this search
+   */
+  private void search(NodeArena tree, SearchContext context) {
+    context.setProportion(tree.getChildCount(NodeArena.ROOT));
+    while(!context.shouldStop()) {
+      int node = NodeArena.ROOT;
+      tree.addVirtualLoss(node);
+      while(tree.isExpanded(node) && tree.getChildCount(node) > 0) {
+        node = UCBLogic.selectBest(tree, node);
+        tree.addVirtualLoss(node);
+      }
+      if(tree.getVisits(node) > 0 && !tree.isExpanded(node)) {
+        if(!tree.tryClaimExpansion(node)) {
+          //another worker is expanding this node right now
+          UCBLogic.revertVirtualLoss(tree, node);
+          Thread.onSpinWait();
+          continue;
+        }
+        expand(tree, node, tree.getResultingState(node), context.getBoard(simBoard));
+        if(tree.getChildCount(node) > 0) {
+          context.setProportion(tree.getChildCount(node));
+          node = UCBLogic.selectBest(tree, node);
+          tree.addVirtualLoss(node);
+        }
+      }
+      if(rolloutPool != null) {
+        double mean = startBatchSimulation(tree, node, context, SearchSettings.LEAF_ROLLOUTS);
+
+        UCBLogic.backpropagate(tree, node, mean, SearchSettings.LEAF_ROLLOUTS);
+      } else {
+        double value = startSimulation(tree, node, context);
+
+        if(SearchSettings.RAVE) {
+          UCBLogic.backpropagate(tree, node, value, context.getBoard(simBoard), context.getAmafTrace());
+        } else {
+          UCBLogic.backpropagate(tree, node, value);
+        }
+      }
+      UCBLogic.revertVirtualLoss(tree, node);
+
+      EventLogService.logTree(tree);
+    }
+  }
+
+  /**
+   * Keeps the subtrees below the chosen action of all searched trees, so the next search can continue where this one
+   * stopped. Everything else of the trees is discarded.
+   * @param trees the searched trees
+   * @param bestCode the code of the action the agent chose, see {@link ActionCodec}
+   * @param gameAfter the game state after the chosen action was executed, after all of its parts for macro actions
+   */
+  private void keepTrees(List<NodeArena> trees, long bestCode, Risk gameAfter) {
+    previousTrees.clear();
+    if(!SearchSettings.REUSE_TREE) {
+      return;
+    }
+    for(NodeArena tree : trees) {
+      int chosen = UCBLogic.findChild(tree, NodeArena.ROOT, bestCode);
+      Risk state = trees.size() == 1 ? gameAfter : new Risk(gameAfter);
+      previousTrees.add(chosen != NodeArena.NONE ? UCBLogic.promoteToRoot(tree, chosen, state) : null);
+    }
+    previousRecordCount = gameAfter.getActionRecords().size();
+  }
+
+  /**
+   * Follows all actions that happened since the previous tree was kept down the previous tree. If every action is found
+   * the reached node is promoted to the new root and keeps its statistics and children.
+   * Reinforcements that do not match a child on their own are matched together with the reinforcements following
+   * them, so the macro action that places the same troops is found, see
+   * {@link ReinforcementPlanner#findAllocation(ActionCodec, List)}.
+   * @param previous the kept tree, may be null
+   * @param game the current game state
+   * @return the new tree or null if the current game state could not be found in the kept tree
+   */
+  private NodeArena reuseTree(NodeArena previous, Risk game) {
+    int recordCount = game.getActionRecords().size();
+    if(previous == null || previousRecordCount < 0 || recordCount < previousRecordCount) {
+      return null;
+    }
+    List<ActionRecord<RiskAction>> records = game.getActionRecords();
+    int node = NodeArena.ROOT;
+    int record = previousRecordCount;
+    while(record < recordCount && node != NodeArena.NONE) {
+      int child = UCBLogic.findChild(previous, node, records.get(record).getAction());
+      int matched = 1;
+      if(child == NodeArena.NONE && SearchSettings.MACRO_REINFORCEMENTS) {
+        List<RiskAction> reinforcements = collectReinforcements(records, record);
+        long allocation = ReinforcementPlanner.findAllocation(codec, reinforcements);
+        if(allocation != ActionCodec.NONE) {
+          child = UCBLogic.findChild(previous, node, allocation);
+          matched = reinforcements.size();
+        }
+      }
+      node = child;
+      record += matched;
+    }
+    if(node == NodeArena.NONE) {
+      return null;
+    }
+    Set<RiskAction> possibleActions = game.getPossibleActions();
+    int first = previous.getFirstChild(node);
+    for(int i = 0; i < previous.getChildCount(node); i++) {
+      RiskAction firstPart = codec.decode(codec.part(previous.getAction(first + i), 0));
+      if(!possibleActions.contains(firstPart)) {
+        //the kept subtree does not fit the actual game state (e.g. hidden information was different)
+        return null;
+      }
+    }
+    return UCBLogic.promoteToRoot(previous, node, game);
+  }
+
+  /**
+   * Collects the reinforcements of a single player that were executed one after another from the given record on
+   * @param records the action records of the game
+   * @param from the index of the first record
+   * @return the reinforcements, empty if the first record is no reinforcement
+   */
+  private List<RiskAction> collectReinforcements(List<ActionRecord<RiskAction>> records, int from) {
+    List<RiskAction> reinforcements = new ArrayList<>();
+    for(int i = from; i < records.size() && records.get(i).getPlayer() == records.get(from).getPlayer(); i++) {
+      RiskAction action = records.get(i).getAction();
+      if(ActionCodec.type(ActionCodec.codeOf(action)) != ActionCodec.REINFORCE)
+        break;
+      reinforcements.add(action);
+    }
+    return reinforcements;
+  }
+
+  /**
+   * Logs the visits of the roots, the size and the evicted subtrees of the search of the current move and resets the
+   * count of the evicted subtrees, which includes the subtrees evicted while pondering before the move. The visits
+   * include those of reused trees from earlier moves.
+   * @param trees the searched trees
+   */
+  private void logSearchStatistics(List<NodeArena> trees) {
+    long visits = 0, nodes = 0, bytes = 0;
+    for(NodeArena tree : trees) {
+      visits += tree.getVisits(NodeArena.ROOT);
+      nodes += tree.size();
+      bytes += tree.getEstimatedBytes();
+    }
+    log.info("Trisker searched " + visits + " root visits in " + trees.size() + " trees with " + nodes
+            + " nodes and about " + (bytes >> 20) + " MiB, evicted " + evictedSubtrees + " subtrees to stay within "
+            + SearchSettings.MAX_TREE_NODES + " nodes and " + (SearchSettings.MAX_TREE_BYTES >> 20) + " MiB");
+    evictedSubtrees = 0;
+  }
+
+  /**
+   * Creates a new MCTS-Tree.
    * @param game the game state that is supposed to serve as the state the tree starts from
-   * @return a {@link UCBNode} without a parent node and without an associated {@link RiskAction}
+   * @return a {@link NodeArena} that only holds a root without an associated {@link RiskAction}
    */
-  private UCBNode startMCSTree(Risk game) {
-    return new UCBNode(null, null, game);
+  private NodeArena startMCSTree(Risk game) {
+    return new NodeArena(game, codec);
   }
 
   /**
    * Starts a simulation corresponding to the simulation phase of MCTS.
-   * @param node the {@link UCBNode} to start the simulation from.
+   * @param tree the tree the node is stored in
+   * @param node the node to start the simulation from.
+   * @param context the {@link SearchContext} of the worker running the simulation
    * @return the value achieved during simulation
    */
-  private double startSimulation(UCBNode node) {
-    return startRandomSimulation(node);
+  private double startSimulation(NodeArena tree, int node, SearchContext context) {
+    return startRandomSimulation(tree, node, context);
+  }
+
+  /**
+   * Runs several random simulations from the given node at the same time on the rollout pool and calculates the mean
+   * of their values. The state at the node is only loaded once, every simulation copies it onto the board of the
+   * pool thread it runs on.
+   * @param tree the tree the node is stored in
+   * @param node the node to start the simulations from
+   * @param context the {@link SearchContext} of the worker that selected the node
+   * @param rollouts the amount of simulations to run
+   * @return the mean of the values reached by the simulations
+   */
+  private double startBatchSimulation(NodeArena tree, int node, SearchContext context, int rollouts) {
+    SimBoard start = context.getBoard(simBoard);
+    prepareBoard(tree, node, start);
+    int proportion = context.getProportion();
+    List<ForkJoinTask<Double>> simulations = new ArrayList<>(rollouts);
+    for(int i = 0; i < rollouts; i++) {
+      simulations.add(rolloutPool.submit(() -> {
+        SearchContext rolloutContext = rolloutContexts.get();
+        rolloutContext.setStopCondition(context::shouldStop);
+        rolloutContext.setProportion(proportion);
+        SimBoard board = rolloutContext.getBoard(simBoard);
+        board.copyFrom(start);
+        return startRandomSimulation(board, rolloutContext, !SearchSettings.TRANSPOSITIONS);
+      }));
+    }
+    double sum = 0.d;
+    for(ForkJoinTask<Double> simulation : simulations) {
+      sum += simulation.join();
+    }
+    return sum / rollouts;
   }
 
   /**
    * Starts a simulation according to MCTS-logic and calculates the value given to the node from which this simulation starts.
    * This simulation is random.
-   * @param node the {@link UCBNode} to start the simulation from
+   * @param tree the tree the node is stored in
+   * @param node the node to start the simulation from
+   * @param context the {@link SearchContext} of the worker running the simulation
+   * @return the value reached as a sum of all rewards obtained during the simulation weighted by when they happened
+   */
+  private double startRandomSimulation(NodeArena tree, int node, SearchContext context) {
+    SimBoard board = context.getBoard(simBoard);
+    prepareBoard(tree, node, board);
+    return startRandomSimulation(board, context, !SearchSettings.TRANSPOSITIONS);
+  }
+
+  /**
+   * Expands the given node with the pruned actions of its resulting state. The player to move is recorded for the
+   * all-moves-as-first statistics. If it is the agent's turn, its actions are rated with
+   * {@link tu_sgp_Trisker_AI#calculateRewardForPreviousAction(SimBoard, int)}, see {@link SearchSettings#PRIORS}.
+   * In the attack phase, nodes with many actions sort them by
+   * {@link ActionPriors#rateAttackOrOccupation(Risk, RiskAction)} and uncover them progressively, see
+   * {@link SearchSettings#PROGRESSIVE_WIDENING}. In the reinforcement phase, the reinforcements are replaced by a few
+   * complete allocations of the troops, see {@link SearchSettings#MACRO_REINFORCEMENTS}. Nodes whose dice are pending
+   * get all outcomes of the dice with their probabilities, see {@link SearchSettings#CHANCE_NODES}.
+   * Only the worker that claimed the expansion of the node may call this method.
+   * @param tree the tree the node is stored in
+   * @param node the node to expand
+   * @param state the resulting state of the node
+   * @param board a board of the worker, used to hash and rate the children
+   */
+  private void expand(NodeArena tree, int node, Risk state, SimBoard board) {
+    tree.setMover(node, state.getCurrentPlayer());
+    if(SearchSettings.CHANCE_NODES && SearchSettings.SEARCH_MODE != SearchMode.TREE_PARALLEL
+            && state.getCurrentPlayer() < 0 && !state.isGameOver()) {
+      UCBLogic.expandOutcomes(tree, node, state.getPossibleActions(), prepareChildBoard(tree, board, state));
+      return;
+    }
+    List<RiskAction> actions = RiskActionPruner.pruneActions(state);
+    if(SearchSettings.PROGRESSIVE_WIDENING && actions.size() >= SearchSettings.WIDENING_MIN_CHILDREN
+            && ActionPriors.isAttackOrOccupation(state)) {
+      ActionPriors.sortAttacksAndOccupations(state, actions);
+      tree.setWidened(node, true);
+    }
+    boolean rated = SearchSettings.PRIORS && state.getCurrentPlayer() == playerId;
+    SimBoard loaded = rated || SearchSettings.TRANSPOSITIONS ? prepareChildBoard(tree, board, state) : null;
+    IntToDoubleFunction rating = rated ? move -> calculateRewardForPreviousAction(loaded, move) : null;
+    if(SearchSettings.MACRO_REINFORCEMENTS && ReinforcementPlanner.isReinforcement(state)) {
+      long[] allocations = ReinforcementPlanner.planReinforcements(codec, state, actions);
+      UCBLogic.expandAll(tree, node, allocations, allocations.length, loaded, rating);
+    } else {
+      UCBLogic.expandAll(tree, node, actions, loaded, rating);
+    }
+  }
+
+  /**
+   * Loads the given state into the given board, so the children of a node with that state can be hashed and rated
+   * during its expansion. For transpositions, the changes of the cards since the first root of the tree are loaded as
+   * well, see {@link NodeArena#getHashedRecord()}.
+   * @param tree the tree the expanded node is stored in
+   * @param board the board to load the state into
+   * @param state the resulting state of the expanded node
+   * @return the loaded board
+   */
+  private SimBoard prepareChildBoard(NodeArena tree, SimBoard board, Risk state) {
+    board.load(state, true);
+    if(SearchSettings.TRANSPOSITIONS)
+      board.loadCardChanges(state, tree.getHashedRecord());
+    return board;
+  }
+
+  /**
+   * Loads the state before the action of the given node into the given board and applies the action, so the board is
+   * in the state after the action and its undo log holds the action for the first reward. The parts of a macro action
+   * are applied one after another.
+   * The state after the action is not taken from the node, so simulating a leaf does not create it.
+   * @param tree the tree the node is stored in
+   * @param node the node to load
+   * @param board the board to load the node into
+   */
+  private void prepareBoard(NodeArena tree, int node, SimBoard board) {
+    board.load(tree.getState(node), true);
+    long action = tree.getAction(node);
+    for(int i = 0; tree.hasAction(node) && i < codec.partCount(action); i++) {
+      board.apply(SimMove.of(codec, codec.part(action, i), board.getPhase() == SimBoard.FORTIFY));
+    }
+  }
+
+  /**
+   * Starts a random simulation on a {@link SimBoard}. Every move is applied to the given board, so the state before the
+   * last move is always available from its undo log.
+   * @param board the board to simulate on. The last move in its undo log is the action of the simulated node.
+   * @param context the {@link SearchContext} of the worker running the simulation
+   * @param rewardAction if the action of the simulated node is rewarded like every move of the simulation. Nodes that
+   *                     share their statistics with transpositions are reached by different actions, so their values
+   *                     must only depend on the position and leave the reward of the action out.
    * @return the value reached as a sum of all rewards obtained during the simulation weighted by when they happened
    */
-  private double startRandomSimulation(UCBNode node) {
+  private double startRandomSimulation(SimBoard board, SearchContext context, boolean rewardAction) {
     double points = 0.d;
-    Risk game = new Risk(node.getState());
-    Risk gameBefore = game;
-    game = (Risk) game.doAction(node.getRiskAction());
     int cnt = 0;
-    while(!game.isGameOver() && !shouldStopComputation() && cnt < TOTAL_RUNS_PER_ROUND / proportion) { //RiskState.isInitialPlacingPhase(game.getBoard())
+    while(!board.isGameOver() && !context.shouldStop() && cnt < TOTAL_RUNS_PER_ROUND / context.getProportion()) {
       cnt++;
-      if(game.getCurrentPlayer() != playerId) {
-        opponentIds.add(game.getCurrentPlayer());
+      if(board.hasPreviousMove() && board.getPreviousPlayer() == playerId && (cnt > 1 || rewardAction)) {
+        points += calculateRewardForPreviousAction(board, board.getPreviousMove()) / cnt * 10;
       }
-      if(game.getPreviousActionRecord().getPlayer() == playerId) {
-        points += calculateRewardForPreviousAction(game, gameBefore) / cnt * 10;
+      int move;
+      if(board.isAttackPending()) {
+        move = board.rollCasualties(context.getRandom());
+      } else {
+        move = SimMoveSampler.sample(board, context.getRandom(), board.getCurrentPlayer() == playerId);
+        if(move == SimMoveSampler.NO_MOVE)
+          break;
       }
-      Set<RiskAction> actions = game.getCurrentPlayer() != playerId ?
-              game.getPossibleActions() : RiskActionPruner.getPrunedActions(game);
-      RiskAction action = actions.stream()
-              .skip(random.nextInt(actions.size())).findFirst().get();
-      gameBefore = (Risk) game.getGame(playerId);
-      game = (Risk) game.doAction(action);
+      board.apply(move);
     }
-    return game.isGameOver() && game.getBoard().isPlayerStillAlive(playerId) ?
-            5000 : !game.isGameOver() ? points : -1000;
+    return board.isGameOver() && board.isPlayerAlive(playerId) ?
+            5000 : !board.isGameOver() ? points : -1000;
   }
 
   /**
    * Calculates the reward that should be given during simulation based on the previous action.
-   * @param gameAfter the game state after the action in question has been applied. The action is obtained via calling
-   *                  {@link Risk#getPreviousAction()} on this instance of {@link Risk}.
-   * @param gameBefore the game state exactly before the action in question was executed.
+   * @param board the board right after the move in question has been applied. The state before the move is read from
+   *              its undo log.
+   * @param move the move in question, see {@link SimMove}
    * @return a number that represents the reward that should be given for choosing the action in question
    */
-  private double calculateRewardForPreviousAction(Risk gameAfter, Risk gameBefore) {
+  private double calculateRewardForPreviousAction(SimBoard board, int move) {
     double reward = 0.d;
-    int targetId = RiskUtils.getTargetOfAction(gameAfter.getPreviousAction());
-    int initId = gameAfter.getPreviousAction().attackingId();
+    int targetId = SimMove.target(move);
+    int initId = SimMove.source(move);
     if(targetId >= 0) {
-      HashMap<Integer, Double> territoryRewards = distributeTerritoryRewards((Risk) gameAfter.getGame(playerId));
-      if(RiskUtils.isInitialPlacingPhase(gameAfter.getBoard())) {
-        reward += territoryRewards.get(targetId);
-      } else if(RiskUtils.isTerritoryOfEnemy((Risk) gameBefore.getGame(playerId), targetId)) {
+      if(board.isInitialPlacingPhase()) {
+        reward += board.getTerritoryReward(targetId);
+      } else if(board.wasEnemyOf(targetId, playerId)) {
         //we are attacking
-        reward += getRewardForAttack((Risk) gameBefore.getGame(playerId), initId, targetId);
-        if(RiskUtils.isTerritoryOfEnemy((Risk) gameAfter.getGame(playerId), targetId)) {
+        reward += getRewardForAttack(board.getPreviousTroops(initId), board.getPreviousTroops(targetId));
+        if(board.isEnemyOf(targetId, playerId)) {
           //give reward for winning a territory based on what that territory gives
-          reward += territoryRewards.get(targetId);
+          reward += board.getTerritoryReward(targetId);
         }
       } else if(initId == -1) {
         //we are reinforcing
-        reward += getRewardForReinforcing(gameBefore.getBoard().getTerritoryTroops(targetId),
-                gameAfter.getBoard().getTerritoryTroops(targetId),
-                RiskUtils.getTotalTroopsOfNeighbouringEnemies((Risk) gameAfter.getGame(playerId),
-                        new ArrayList<>(gameAfter.getGame(playerId).getBoard().neighboringEnemyTerritories(targetId))));
+        reward += getRewardForReinforcing(board.getPreviousTroops(targetId), board.getTroops(targetId),
+                board.getEnemyNeighborTroops(targetId));
       } else {
         //we are fortifying
-        reward += getRewardForFortifying(gameAfter, initId, targetId);
+        reward += getRewardForFortifying(board, initId, targetId);
       }
     } else if (targetId == -1) {
-      reward += getRewardForCasualties(gameAfter.getPreviousAction());
+      reward += getRewardForCasualties(move);
     } else if (targetId == -2) {
-      reward += getRewardForOccupy(gameBefore, gameAfter, gameAfter.getPreviousAction());
+      reward += getRewardForOccupy(board, move);
     } else if (targetId == -3) {
       reward += getRewardForCards();
     }
@@ -206,13 +647,13 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
 
   /**
    * Gives a reward based on how good a fortification was
-   * @param game the game state after the fortifying action has been executed
-   * @param initId the id of the fortifying {@link RiskTerritory} (where troops come from)
-   * @param targetId the id of the fortified {@link RiskTerritory} (where troops go to)
+   * @param board the board after the fortifying move has been applied
+   * @param initId the id of the fortifying territory (where troops come from)
+   * @param targetId the id of the fortified territory (where troops go to)
    * @return a number representing the reward given for this fortification
    */
-  private double getRewardForFortifying(Risk game, int initId, int targetId) {
-    if(RiskUtils.isNewTerritoryCloserToEnemy(game, initId, targetId)) {
+  private double getRewardForFortifying(SimBoard board, int initId, int targetId) {
+    if(isNewTerritoryCloserToEnemy(board, initId, targetId)) {
       return RewardFactors.FORTIFIED_TERRITORY_CLOSER_TO_ENEMY;
     } else {
       return RewardFactors.FORTIFIED_TERRITORY_NOT_CLOSER_TO_ENEMY;
@@ -248,14 +689,12 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
   /**
    * Gives a reward based on how good a reinforcement was. Gives more rewards if more than one more unit than the enemy
    * has to defend was used.
-   * @param game the game state after the attack
-   * @param attackingId the id of the territory where the attack is happening from
-   * @param defendingId the id of the territory that is being attacked
+   * @param attackingTroops the troops on the territory where the attack is happening from, before the attack
+   * @param defendingTroops the troops on the territory that is being attacked, before the attack
    * @return
    */
-  private double getRewardForAttack(Risk game, int attackingId, int defendingId) {
-    Map<Integer, RiskTerritory> territories = game.getBoard().getTerritories();
-    int troopDifference = (territories.get(attackingId).getTroops() - 1) - territories.get(defendingId).getTroops();
+  private double getRewardForAttack(int attackingTroops, int defendingTroops) {
+    int troopDifference = (attackingTroops - 1) - defendingTroops;
     if (troopDifference <= 0) {
       return RewardFactors.LESS_TROOPS_FOR_ATTACK;
     }
@@ -270,39 +709,41 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
 
   /**
    * Gives a reward if the defenders casualties were higher than ours. Or a different reward if the opposite is the case.
-   * @param action a {@link RiskAction} of type casualties. This method's functionality does not work with any other type of
-   *               {@link RiskAction}.
-   * @return the reward for the given casualties action.
+   * @param move a move of type {@link SimMove#CASUALTIES}. This method's functionality does not work with any other
+   *             type of move.
+   * @return the reward for the given casualties move.
    */
-  private double getRewardForCasualties(RiskAction action) {
-    return action.attackerCasualties() - action.defenderCasualties() < 0 ?
+  private double getRewardForCasualties(int move) {
+    return SimMove.attackerCasualties(move) - SimMove.defenderCasualties(move) < 0 ?
             RewardFactors.LESS_CASUALTIES_REWARD_FACTOR : RewardFactors.MORE_CASUALTIES_REWARD_FACTOR;
   }
 
   /**
-   * Gives a reward for an occupy action. The reward is based on if more troops where left in the territory that has
+   * Gives a reward for an occupy move. The reward is based on if more troops where left in the territory that has
    * more surrounding enemy troops than the other. If all options leave the agent's territories with fewer troops than
    * the surrounding enemies a different reward is given.
-   * @param gameBefore the game state before the occupy action happened
-   * @param gameAfter the game state after the occupy action happened
-   * @param action a {@link RiskAction} of type occupy. This method's functionality does not work with any other type of
-   *               {@link RiskAction}.
-   * @return the reward for the given occupy action
+   * @param board the board right after the occupy move happened
+   * @param move a move of type {@link SimMove#OCCUPY}. This method's functionality does not work with any other type
+   *             of move.
+   * @return the reward for the given occupy move
    */
-  private double getRewardForOccupy(Risk gameBefore, Risk gameAfter, RiskAction action) {
+  private double getRewardForOccupy(SimBoard board, int move) {
     double rewards = 0;
-    int targetId = RiskUtils.getTargetOfAction(gameBefore.getActionRecords().get(gameBefore.getActionRecords().size()-2).getAction());
-    int attacking = RiskUtils.getTargetOfAction(gameBefore.getActionRecords().get(gameBefore.getActionRecords().size()-2).getAction());
-    int placedTroops = action.troops();
+    int targetId = board.getPreviousAttackTarget();
+    int attacking = board.getPreviousAttackSource();
+    int placedTroops = SimMove.troops(move);
+    if(targetId < 0 || attacking < 0) {
+      return rewards;
+    }
 
     // If territory is closer to enemy
-    if (RiskUtils.isNewTerritoryCloserToEnemy(gameAfter, attacking, targetId) && placedTroops > 1) {
+    if (isNewTerritoryCloserToEnemy(board, attacking, targetId) && placedTroops > 1) {
       rewards += RewardFactors.OCCUPY_INITIAL_TERRITORY_CLOSER_TO_ENEMY;
     }
 
-    int availableTroops = gameAfter.getGame().getBoard().getTerritoryTroops(attacking) + placedTroops - 1;
-    int enemyTroopsSurroundingTarget = RiskUtils.getTotalTroopsOfNeighbouringEnemies(gameAfter, targetId);
-    int enemyTroopsSurroundingSource = RiskUtils.getTotalTroopsOfNeighbouringEnemies(gameAfter, attacking);
+    int availableTroops = board.getTroops(attacking) + placedTroops - 1;
+    int enemyTroopsSurroundingTarget = board.getEnemyNeighborTroops(targetId);
+    int enemyTroopsSurroundingSource = board.getEnemyNeighborTroops(attacking);
 
     // To nothing, because any decision could be wrong
     if (availableTroops < enemyTroopsSurroundingSource && availableTroops < enemyTroopsSurroundingTarget) {
@@ -317,6 +758,17 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
     return rewards;
   }
 
+  /**
+   * Checks if territory B is closer to an enemy as territory A
+   * @param board the board to check on
+   * @param initialT the first territory id (A)
+   * @param newT the second territory id (B)
+   * @return if B is closer as A true, else false
+   */
+  private boolean isNewTerritoryCloserToEnemy(SimBoard board, int initialT, int newT) {
+    return board.getEnemyDistance(newT) < board.getEnemyDistance(initialT);
+  }
+
   /**
    * Gives the reward for having played cards.
    * @return the reward for having played cards
@@ -327,146 +779,81 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
 
   @Override
   public void tearDown() {
+    stopPondering();
+    previousTrees.clear();
+    plannedActions.clear();
+    codec.clear();
     super.tearDown();
   }
 
+  /**
+   * Keeps searching the kept trees in the background while the opponents move. The roots of the kept trees are the
+   * states after our last action, so their children are the replies of the next player. The search continues until
+   * {@link tu_sgp_Trisker_AI#ponderStop()} is called and the next call of
+   * {@link tu_sgp_Trisker_AI#computeNextAction(Risk, long, TimeUnit)} reuses the subtree of the reply that actually happened.
+   */
   @Override
   public void ponderStart() {
     super.ponderStart();
+    if(ponderer == null || ponderSearch != null) {
+      return;
+    }
+    List<NodeArena> trees = new ArrayList<>();
+    for(NodeArena tree : previousTrees) {
+      if(tree != null && !tree.getState(NodeArena.ROOT).isGameOver()) {
+        trees.add(tree);
+      }
+    }
+    if(trees.isEmpty()) {
+      return;
+    }
+    pondering = true;
+    ponderSearch = ponderer.submit(() -> runSearch(trees, () -> !pondering));
   }
 
   @Override
   public void ponderStop() {
+    stopPondering();
     super.ponderStop();
   }
 
-  @Override
-  public void destroy() {
-    super.destroy();
-  }
-
-  /**
-   * Creates a HashMap that contains all territory ids and the reward that should be given for occupying those territories,
-   * according to the current game state. In distributing these rewards the method considers the continents that
-   * territories are on, if the territory is a transition or the neighbour of such a transition, the amount of
-   * neighbouring enemy territories, if a territory is the last on an enemy continent, if a territory is the last enemy
-   * territory on a continent and how many territories are already owned by the agent on their continent.
-   * @param game the current game state
-   * @return a HashMap where the key is the id of the territory and the value is the reward for that territory
-   */
-  private HashMap<Integer, Double> distributeTerritoryRewards(Risk game) {
-    RiskBoard board = game.getBoard();
-    HashMap<Integer, Double> territoryRewards = new HashMap<>();
-    HashMap<Integer, Integer> occupiedContinents = createOccupiedContinentsMap(game);
-    HashMap<Integer, Double> contRewards = updateRewardsByContinent(occupiedContinents);
-    boolean isPlacingPhase = RiskUtils.isInitialPlacingPhase(game.getBoard());
-
-    board.getTerritoryIds().forEach(id -> {
-      double rewardToGive = 0.d;
-      Set<Integer> neighbors = board.neighboringTerritories(id);
-      List<Integer> nList = new ArrayList<>(neighbors);
-
-      if(!isPlacingPhase && isLastEnemyOnContinent(game, id)) {
-        List<Integer> neighborsOnContinent = nList.stream()
-                .filter(x -> board.getTerritories().get(id).getContinentId() == board.getTerritories().get(x).getContinentId())
-                .collect(Collectors.toList());
-        for(Integer neighborId : neighborsOnContinent) {
-          double toAdd = territoryRewards.get(neighborId) != null ? territoryRewards.get(neighborId) : 0.d;
-          toAdd += board.getTerritories().get(id).getTroops() < board.getTerritories().get(neighborId).getTroops() ?
-                  RewardFactors.MORE_TROOPS_NEAR_LAST_ENEMY_TERRITORY : 0.d;
-          territoryRewards.put(neighborId, toAdd);
-        }
-      }
-
-      if(RiskUtils.territoriesBelongToDifferentContinents(board, nList)) {
-        //territory is a transition
-        rewardToGive += RewardFactors.TRANSITION_REWARD_FACTOR;
-        //all neighbouring territories get reward since they are one territory away from a transition
-        neighbors.forEach(neighborId -> {
-          double toAdd = territoryRewards.get(neighborId) != null ? territoryRewards.get(neighborId) : 0.d;
-          territoryRewards.put(neighborId,
-                  toAdd + RewardFactors.TRANSITION_NEIGHBOR_REWARD_FACTOR);
-        });
-      }
-      int continentId = board.getTerritories().get(id).getContinentId();
-      if(occupiedContinents.containsKey(continentId)) {
-        rewardToGive += RewardFactors.CONTINENT_REWARD_FACTOR * contRewards.get(continentId);
-        int neighboringEnemyTerritories = board.neighboringEnemyTerritories(id).size();
-        if(neighboringEnemyTerritories > 0 && neighboringEnemyTerritories < 3) {
-          rewardToGive += RewardFactors.NEAR_ENEMY_REWARD_FACTOR;
-        }
-      }
-
-      if(game.getCurrentPlayer() == playerId && isLastAvailableOfEnemyContinent(game, id)) {
-        rewardToGive += RewardFactors.LAST_ON_ENEMY_CONTINENT_REWARD_FACTOR;
-      }
-
-      double toAdd = territoryRewards.get(id) != null ? territoryRewards.get(id) : 0.d;
-      territoryRewards.put(id, toAdd + rewardToGive);
-    });
-    return territoryRewards;
-  }
-
   /**
-   * Creates a HashMap that contains all continent's ids, of which the agent has at least one territory in, as keys.
-   * The value is the amount of territories the agent owns inside that particular continent.
-   * @param game the current game state
-   * @return a HashMap according to the above description
+   * Stops the background search started by {@link tu_sgp_Trisker_AI#ponderStart()} and waits until all of its workers
+   * have finished their current iteration. If the background search failed the kept trees are discarded.
    */
-  private HashMap<Integer, Integer> createOccupiedContinentsMap(Risk game) {
-    RiskBoard board = game.getBoard();
-    HashMap<Integer, Integer> occupiedContinents = new HashMap<>();
-
-    for(Map.Entry<Integer, RiskTerritory> entry : board.getTerritories().entrySet()){
-      if(entry.getValue().getOccupantPlayerId() == playerId) {
-        if(occupiedContinents.containsKey(entry.getValue().getContinentId())) {
-          occupiedContinents.put(entry.getValue().getContinentId(),
-                  occupiedContinents.get(entry.getValue().getContinentId()) + 1);
-        } else {
-          occupiedContinents.put(entry.getValue().getContinentId(), 1);
-        }
-      }
+  private void stopPondering() {
+    if(ponderSearch == null) {
+      return;
     }
-    return occupiedContinents;
-  }
-
-  /**
-   * Determines if the given territory is the last enemy territory on its continent.
-   * @param game the current game state
-   * @param territoryId the id of the territory in question
-   * @return true if the given territory is the last enemy territory on its continent, false if not
-   */
-  private boolean isLastEnemyOnContinent(Risk game, int territoryId) {
-    if(game.getBoard().getTerritories().get(territoryId).getOccupantPlayerId() == playerId)
-      return false;
-    Continent c = continents.get(game.getBoard().getTerritories().get(territoryId).getContinentId());
-    int seizedTerritories = 0;
-    for(RiskTerritory t : c.getTerritories()) {
-      if(t.getOccupantPlayerId() == playerId) {
-        seizedTerritories++;
-      }
+    pondering = false;
+    try {
+      ponderSearch.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ex) {
+      log.warn("Trisker pondering failed, discarding the kept trees: " + ex.getCause());
+      previousTrees.clear();
     }
-    return seizedTerritories + 1 == c.getTerritories().size();
+    ponderSearch = null;
   }
 
-  /**
-   * Determines if the given territory is the last one that is not occupied by any player on a continent that
-   * has all other territory occupied by the enemy.
-   * @param game the current game state
-   * @param territoryId the id of the territory in question
-   * @return true if the given territory is the last available on an otherwise enemy continent, false if not
-   */
-  private boolean isLastAvailableOfEnemyContinent(Risk game, int territoryId) {
-    if(opponentIds.contains(game.getBoard().getTerritories().get(territoryId).getOccupantPlayerId()))
-      return false;
-    Continent c = continents.get(game.getBoard().getTerritories().get(territoryId).getContinentId());
-    int seizedTerritories = 0;
-    for(RiskTerritory t : c.getTerritories()) {
-      if(opponentIds.contains(t.getOccupantPlayerId())) {
-        seizedTerritories++;
-      }
+  @Override
+  public void destroy() {
+    if(workers != null) {
+      workers.shutdownNow();
+      workers = null;
+    }
+    if(rolloutPool != null) {
+      rolloutPool.shutdownNow();
+      rolloutPool = null;
+    }
+    if(ponderer != null) {
+      pondering = false;
+      ponderer.shutdownNow();
+      ponderer = null;
+      ponderSearch = null;
     }
-    return seizedTerritories + 1 == c.getTerritories().size();
+    super.destroy();
   }
 
   /**
@@ -485,30 +872,6 @@ public class tu_sgp_Trisker_AI extends AbstractGameAgent<Risk, RiskAction>
     });
   }
 
-  /**
-   * Assigns each continent a new reward value according to the {@link Continent#getBaseReward()} and the amount of
-   * territories of each continent the agent already owns.
-   * @param occupiedContinents a HashMap of the already occupied continents of the agent.
-   *                           The key is the id of the continent and the value is the amount
-   *                           of territories of that continent the agent owns.
-   * @return a HashMap containing the rewards for each continent where the agent owns a territory in.
-   *         The key is the id of the continent and the value is the reward for that continent.
-   */
-  private HashMap<Integer, Double> updateRewardsByContinent(HashMap<Integer, Integer> occupiedContinents) {
-    HashMap<Integer, Double> contRewards = new HashMap<>();
-    continents.forEach((id, continent) -> {
-      if(occupiedContinents.containsKey(id)) {
-        Double reward = continent.getBaseReward();
-        //prioritize continents we already have some territories in
-        reward += RewardFactors.OCCUPIED_CONTINENT_REWARD_FACTOR +
-                occupiedContinents.get(id) * RewardFactors.OCCUPIED_CONTINENT_ADDITIONAL_FOR_EACH_TERRITORY_ALREADY_OCCUPIED_REWARD_FACTOR
-                * continent.getBaseReward();
-        contRewards.put(id, reward);
-      }
-    });
-    return contRewards;
-  }
-
   /**
    * Creates a HashMap of our own {@link Continent} objects to be used in later calculations. Uses the continents of
    * @link RiskBoard}.
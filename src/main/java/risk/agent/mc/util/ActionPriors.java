@@ -0,0 +1,59 @@
+package risk.agent.mc.util;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import risk.agent.mc.sim.BattleOdds;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rates {@link RiskAction}s with cheap heuristics, so the search can try the most promising actions of a node first.
+ * The ratings only have to order the actions of a single game state, they are not comparable between states.
+ */
+public class ActionPriors {
+
+  /**
+   * If the player to move in the given game state attacks or occupies a conquered territory. These are the states with
+   * the most actions after pruning, since every pair of neighbouring territories and amount of troops is an action.
+   * @param game the game state to check
+   * @return true if the game is in the attack phase and no dice are pending, false if not
+   */
+  public static boolean isAttackOrOccupation(Risk game) {
+    RiskBoard board = game.getBoard();
+    return game.getCurrentPlayer() >= 0 && !game.isGameOver() && !board.isReinforcementPhase()
+            && !board.isFortifyPhase();
+  }
+
+  /**
+   * Rates an action of the attack phase. Attacks are rated by the probability of conquering the defending territory
+   * with all troops of the attacking territory (see {@link BattleOdds#getConquestProbability(int, int)}), more dice
+   * break ties. Ending the phase is rated 0.5, so it comes after every attack that is more likely won than lost.
+   * Occupations are rated by the amount of troops they move.
+   * @param game the game state the action is executed in
+   * @param action the action to rate
+   * @return the rating of the action, higher is better
+   */
+  public static double rateAttackOrOccupation(Risk game, RiskAction action) {
+    if(action.isEndPhase())
+      return 0.5d;
+    if(action.selected() == -2)
+      return action.troops();
+    if(action.attackingId() < 0 || action.selected() < 0)
+      return 0.d;
+    RiskBoard board = game.getBoard();
+    return BattleOdds.getConquestProbability(board.getTerritoryTroops(action.attackingId()) - 1,
+            board.getTerritoryTroops(action.selected())) + action.troops() / 1000.d;
+  }
+
+  /**
+   * Sorts the given actions of the attack phase by their rating, the best action comes first.
+   * See {@link ActionPriors#rateAttackOrOccupation(Risk, RiskAction)}.
+   * @param game the game state the actions are executed in
+   * @param actions the actions to sort, they are sorted in place
+   */
+  public static void sortAttacksAndOccupations(Risk game, List<RiskAction> actions) {
+    actions.sort(Comparator.comparingDouble((RiskAction action) -> rateAttackOrOccupation(game, action)).reversed());
+  }
+}
@@ -0,0 +1,173 @@
+package risk.agent.mc.util;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import risk.agent.mc.data.ActionCodec;
+import risk.agent.mc.data.SearchSettings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates complete allocations of the troops of a reinforcement phase, so the search can place all of them with a
+ * single macro action (see {@link ActionCodec#encodeMacro(long[])}) instead of one action per territory.
+ * Only a few allocations over the territories the pruned reinforcements target are generated, which are the
+ * front-line territories of the player, see {@link RiskActionPruner#pruneBadReinforcements}.
+ * The parts of an allocation are sorted by the codec, so every allocation has exactly one code.
+ */
+public class ReinforcementPlanner {
+
+  /**
+   * If the player to move in the given game state places the troops of its turn
+   * @param game the game state to check
+   * @return true if the game is in a reinforcement phase after the initial placing phase, false if not
+   */
+  public static boolean isReinforcement(Risk game) {
+    RiskBoard board = game.getBoard();
+    return game.getCurrentPlayer() >= 0 && !game.isGameOver() && board.isReinforcementPhase()
+            && !RiskUtils.isInitialPlacingPhase(board);
+  }
+
+  /**
+   * Replaces the reinforcements among the given actions with complete allocations of all troops left to place:
+   * all troops on each of the {@link SearchSettings#MACRO_TARGETS} territories with the best attack opportunity,
+   * the troops split evenly between the best two of them and the troops spread over the territories that face the
+   * most enemy troops. All other actions (e.g. trading cards) are kept as they are.
+   * @param codec the codec the actions and allocations are encoded with
+   * @param game the game state the actions are executed in
+   * @param actions the pruned actions of the game state, see {@link RiskActionPruner#pruneActions(Risk)}
+   * @return the codes of the kept actions followed by the codes of the allocations, see {@link ActionCodec}
+   */
+  public static long[] planReinforcements(ActionCodec codec, Risk game, Collection<RiskAction> actions) {
+    long[] codes = new long[actions.size() + SearchSettings.MACRO_TARGETS + 2];
+    int[] front = new int[actions.size()];
+    int count = 0, frontSize = 0, troops = 0;
+    for(RiskAction action : actions) {
+      long code = codec.encode(action);
+      if(ActionCodec.type(code) != ActionCodec.REINFORCE) {
+        codes[count++] = code;
+        continue;
+      }
+      troops = Math.max(troops, action.troops());
+      if(indexOf(front, frontSize, action.reinforcedId()) < 0)
+        front[frontSize++] = action.reinforcedId();
+    }
+    if(frontSize == 0)
+      return Arrays.copyOf(codes, count);
+    RiskBoard board = game.getBoard();
+    double[] opportunities = new double[frontSize];
+    int[] pressures = new int[frontSize];
+    for(int i = 0; i < frontSize; i++) {
+      int weakest = Integer.MAX_VALUE, enemyTroops = 0;
+      for(int enemyId : board.neighboringEnemyTerritories(front[i])) {
+        weakest = Math.min(weakest, board.getTerritoryTroops(enemyId));
+        enemyTroops += board.getTerritoryTroops(enemyId);
+      }
+      opportunities[i] = weakest == Integer.MAX_VALUE ? Double.NEGATIVE_INFINITY
+              : board.getTerritoryTroops(front[i]) - weakest;
+      pressures[i] = enemyTroops - board.getTerritoryTroops(front[i]);
+    }
+    sortByOpportunity(front, opportunities, pressures, frontSize);
+
+    int[] placed = new int[frontSize];
+    for(int i = 0; i < Math.min(frontSize, SearchSettings.MACRO_TARGETS); i++) {
+      Arrays.fill(placed, 0);
+      placed[i] = troops;
+      count = addAllocation(codec, codes, count, front, placed);
+    }
+    if(frontSize >= 2 && troops >= 2) {
+      Arrays.fill(placed, 0);
+      placed[0] = troops - troops / 2;
+      placed[1] = troops / 2;
+      count = addAllocation(codec, codes, count, front, placed);
+    }
+    Arrays.fill(placed, 0);
+    for(int troop = 0; troop < troops; troop++) {
+      int neediest = 0;
+      for(int i = 1; i < frontSize; i++) {
+        if(pressures[i] - placed[i] > pressures[neediest] - placed[neediest])
+          neediest = i;
+      }
+      placed[neediest]++;
+    }
+    count = addAllocation(codec, codes, count, front, placed);
+    return Arrays.copyOf(codes, count);
+  }
+
+  /**
+   * The code of the allocation the given reinforcements make together, so a macro action can be found from the
+   * actions that were actually executed, no matter in which order and in how many steps the troops were placed.
+   * @param codec the codec the macro actions were encoded with
+   * @param reinforcements consecutive reinforcements of a single player
+   * @return the code of the single reinforcement or the macro action that places the same troops on the same
+   *         territories, {@link ActionCodec#NONE} if no such macro action was encoded yet
+   */
+  public static long findAllocation(ActionCodec codec, List<RiskAction> reinforcements) {
+    Map<Integer, Integer> troopsByTerritory = new TreeMap<>();
+    for(RiskAction action : reinforcements) {
+      troopsByTerritory.merge(action.reinforcedId(), action.troops(), Integer::sum);
+    }
+    long[] parts = new long[troopsByTerritory.size()];
+    int count = 0;
+    for(Map.Entry<Integer, Integer> entry : troopsByTerritory.entrySet()) {
+      parts[count++] = codec.encode(RiskAction.reinforce(entry.getKey(), entry.getValue()));
+    }
+    if(count == 0)
+      return ActionCodec.NONE;
+    return count == 1 ? parts[0] : codec.findMacro(parts);
+  }
+
+  /**
+   * Encodes the given allocation and appends it to the given codes, unless it is already among them
+   * @return the new amount of codes
+   */
+  private static int addAllocation(ActionCodec codec, long[] codes, int count, int[] front, int[] placed) {
+    long[] parts = new long[placed.length];
+    int partCount = 0;
+    for(int i = 0; i < placed.length; i++) {
+      if(placed[i] > 0)
+        parts[partCount++] = codec.encode(RiskAction.reinforce(front[i], placed[i]));
+    }
+    parts = Arrays.copyOf(parts, partCount);
+    long code = parts.length == 1 ? parts[0] : codec.encodeMacro(parts);
+    for(int i = 0; i < count; i++) {
+      if(codes[i] == code)
+        return count;
+    }
+    codes[count] = code;
+    return count + 1;
+  }
+
+  /**
+   * Sorts the front-line territories and their ratings by the attack opportunity, the best territory comes first
+   */
+  private static void sortByOpportunity(int[] front, double[] opportunities, int[] pressures, int size) {
+    for(int i = 1; i < size; i++) {
+      for(int j = i; j > 0 && opportunities[j] > opportunities[j - 1]; j--) {
+        swap(front, j, j - 1);
+        swap(pressures, j, j - 1);
+        double opportunity = opportunities[j];
+        opportunities[j] = opportunities[j - 1];
+        opportunities[j - 1] = opportunity;
+      }
+    }
+  }
+
+  private static void swap(int[] values, int i, int j) {
+    int value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+
+  private static int indexOf(int[] values, int size, int value) {
+    for(int i = 0; i < size; i++) {
+      if(values[i] == value)
+        return i;
+    }
+    return -1;
+  }
+}
@@ -2,8 +2,12 @@ package risk.agent.mc.util;
 
 import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import risk.agent.mc.data.Bitboard;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -11,18 +15,53 @@ import java.util.Set;
  */
 public class RiskActionPruner {
 
+  private static final ThreadLocal<PruningBuffer> buffers = ThreadLocal.withInitial(PruningBuffer::new);
+
+  /**
+   * Prunes all unfavorable actions from the possible actions of the game state in a single pass.
+   * Meant to keep the same actions as {@link RiskActionPruner#getPrunedActions(Risk)}, which RiskActionPrunerTest
+   * compares on the states of random games, but groups the actions by their source and target in a primitive table
+   * and marks the kept actions in arrays instead of building a new set for every step. All of it is reused by the
+   * next call on the same thread.
+   * @param game the game state of which to get the possible actions from
+   * @return the pruned actions in a list that belongs to the calling thread and is overwritten by its next call
+   */
+  public static List<RiskAction> pruneActions(Risk game) {
+    PruningBuffer buffer = buffers.get();
+    buffer.prune(game);
+    return buffer.result;
+  }
+
+  /**
+   * Groups the given actions like {@link RiskUtils#groupActions(Set)} does, but in the arrays of the calling thread.
+   * Of several actions with the highest troops of their group only the last one is kept, like in the map of
+   * {@link RiskUtils#groupActions(Set)}.
+   * @param actions the actions to reduce
+   * @return the reduced actions in a list that belongs to the calling thread and is overwritten by its next call
+   */
+  static List<RiskAction> groupActions(Set<RiskAction> actions) {
+    PruningBuffer buffer = buffers.get();
+    buffer.result.clear();
+    buffer.group(actions);
+    buffer.collect();
+    return buffer.result;
+  }
+
   /**
    * Prunes all unfavorable actions from the possible actions of the game state.
+   * Every step of the pruning builds a new set, see {@link RiskActionPruner#pruneActions(Risk)} for the variant that
+   * is used during the search.
    * @param game the game state of which to get the possible actions from
    * @return the pruned actions
    */
   public static Set<RiskAction> getPrunedActions(Risk game) {
     if(!RiskUtils.isInitialPlacingPhase(game.getBoard())) {
+      Bitboard bitboard = RiskUtils.createBitboard(game);
       Set<RiskAction> prunedActions = RiskUtils.groupActions(game.getPossibleActions());
-      prunedActions = pruneBadAttacks(game, prunedActions);
-      prunedActions = pruneBadReinforcements(game, prunedActions);
-      prunedActions = pruneBadEndphase(game, prunedActions);
-      prunedActions = pruneBadFortifies(game, prunedActions);
+      prunedActions = pruneBadAttacks(game, bitboard, prunedActions);
+      prunedActions = pruneBadReinforcements(game, bitboard, prunedActions);
+      prunedActions = pruneBadEndphase(game, bitboard, prunedActions);
+      prunedActions = pruneBadFortifies(game, bitboard, prunedActions);
       return prunedActions;
     }
     return game.getPossibleActions();
@@ -33,10 +72,11 @@ public class RiskActionPruner {
    * have troops that are less than or equal to the defender's troops.
    * Does not permute the original actions.
    * @param game the gamestate before the actions are taken as an instance of {@link Risk}
+   * @param bitboard the owners of the territories of the game state, see {@link RiskUtils#createBitboard(Risk)}
    * @param actions the actions to remove bad attacks from
    * @return the given actions minus the removed actions
    */
-  public static Set<RiskAction> pruneBadAttacks(Risk game, Set<RiskAction> actions) {
+  public static Set<RiskAction> pruneBadAttacks(Risk game, Bitboard bitboard, Set<RiskAction> actions) {
     if(!game.getBoard().isAttackPhase()) {
       return actions;
     }
@@ -44,7 +84,7 @@ public class RiskActionPruner {
     Set<RiskAction> goodActions = new HashSet<>();
     for(RiskAction action : actions) {
       targetId = RiskUtils.getTargetOfAction(action);
-      if(!RiskUtils.isTerritoryOfEnemy(game, targetId)
+      if(!RiskUtils.isTerritoryOfEnemy(bitboard, targetId)
               || game.getBoard().getTerritoryTroops(targetId) < action.troops()) {
         //we are NOT attacking with less than or equal troops to the defender
         goodActions.add(action);
@@ -54,7 +94,7 @@ public class RiskActionPruner {
       //we pruned all actions except the endphase
       for(RiskAction action : actions) {
         targetId = RiskUtils.getTargetOfAction(action);
-        if(RiskUtils.isTerritoryOfEnemy(game, targetId) 
+        if(RiskUtils.isTerritoryOfEnemy(bitboard, targetId) 
                 && game.getBoard().getTerritoryTroops(action.attackingId()) - 3 > game.getBoard().getTerritoryTroops(targetId)) {
           //add attacks against territories with more than 2 troops if we have more than 3 more total units available than the opponent
           goodActions.add(action);
@@ -68,10 +108,11 @@ public class RiskActionPruner {
    * Returns all actions minus reinforcements that don't reinforce a territory that is next to an enemy.
    * If no reinforcements have nearby enemies all actions are returned.
    * @param game the current game state the given actions would apply to
+   * @param bitboard the owners of the territories of the game state, see {@link RiskUtils#createBitboard(Risk)}
    * @param actions the actions to check for bad reinforcements in
    * @return the filtered actions
    */
-  public static Set<RiskAction> pruneBadReinforcements(Risk game, Set<RiskAction> actions) {
+  public static Set<RiskAction> pruneBadReinforcements(Risk game, Bitboard bitboard, Set<RiskAction> actions) {
     if(!game.getBoard().isReinforcementPhase()) {
       return actions;
     }
@@ -79,7 +120,7 @@ public class RiskActionPruner {
     Set<RiskAction> goodActions = new HashSet<>();
     for(RiskAction action : actions) {
       targetId = RiskUtils.getTargetOfAction(action);
-      if (!(targetId >= 0 && action.attackingId() == -1) || !game.getBoard().neighboringEnemyTerritories(targetId).isEmpty()) {
+      if (!(targetId >= 0 && action.attackingId() == -1) || RiskUtils.hasNeighbouringEnemy(bitboard, targetId)) {
         goodActions.add(action);
       }
     }
@@ -88,12 +129,13 @@ public class RiskActionPruner {
 
   /**
    * If there are good attacks left the endphase action will be removed.
-   * Prerequisite: the actions parameter has to be run through {@link RiskActionPruner#pruneBadAttacks(Risk, Set)} first.
+   * Prerequisite: the actions parameter has to be run through {@link RiskActionPruner#pruneBadAttacks(Risk, Bitboard, Set)} first.
    * @param game the current game state the given actions would apply to
+   * @param bitboard the owners of the territories of the game state, see {@link RiskUtils#createBitboard(Risk)}
    * @param actions the actions to check for a bad endphase in
    * @return the filtered actions
    */
-  public static Set<RiskAction> pruneBadEndphase(Risk game, Set<RiskAction> actions) {
+  public static Set<RiskAction> pruneBadEndphase(Risk game, Bitboard bitboard, Set<RiskAction> actions) {
     if(game.getBoard().isReinforcementPhase()) {
       //there is no endphase in the reinforcement phase
       return actions;
@@ -105,7 +147,7 @@ public class RiskActionPruner {
       if (action.attackingId() == -2 && action.selected() == -4 && action.troops() == -8) {
         endPhase = action;
       }
-      if(RiskUtils.isTerritoryOfEnemy(game, action.selected())) {
+      if(RiskUtils.isTerritoryOfEnemy(bitboard, action.selected())) {
         hasGoodActionLeft = true;
       }
       if(hasGoodActionLeft && endPhase != null) {
@@ -121,16 +163,17 @@ public class RiskActionPruner {
    * where the fortifying distance to enemies is more remote than the fortified distance.
    * Does not permute the original actions.
    * @param game the gamestate before the actions are taken as an instance of {@link Risk}
+   * @param bitboard the owners of the territories of the game state, see {@link RiskUtils#createBitboard(Risk)}
    * @param actions the actions to remove bad fortifies from
    * @return the given actions minus the removed actions
    */
-  public static Set<RiskAction> pruneBadFortifies(Risk game, Set<RiskAction> actions) {
+  public static Set<RiskAction> pruneBadFortifies(Risk game, Bitboard bitboard, Set<RiskAction> actions) {
     if (!game.getBoard().isFortifyPhase()) {
       return actions;
     }
 
     Set<RiskAction> prunedActions = new HashSet<>(actions);
-    int[] distances = RiskUtils.calculateDistanceMapToClosestEnemyTerritories(game);
+    int[] distances = RiskUtils.calculateDistanceMapToClosestEnemyTerritories(bitboard);
     for (RiskAction action : actions) {
       if (action.equals(RiskAction.endPhase())) continue;
 
@@ -146,4 +189,194 @@ public class RiskActionPruner {
 
     return prunedActions;
   }
+
+  /**
+   * Checks if the given action ends the current phase
+   * @param action the action to check
+   * @return true if the action is the end of the phase
+   */
+  private static boolean isEndPhase(RiskAction action) {
+    return action.attackingId() == -2 && action.selected() == -4 && action.troops() == -8;
+  }
+
+  /**
+   * The arrays one thread prunes its actions in. Each action gets a group, which is the slot of its source and target
+   * in an open addressing table that holds the highest troops of the group. Slots that were filled by a previous call
+   * are recognized by their stamp, so the table does not have to be cleared.
+   */
+  private static class PruningBuffer {
+    private RiskAction[] actions = new RiskAction[64];
+    private int[] groups = new int[64];
+    private boolean[] kept = new boolean[64];
+    private boolean[] good = new boolean[64];
+    private long[] groupKeys = new long[128];
+    private int[] groupMax = new int[128];
+    private int[] groupBest = new int[128];
+    private int[] groupStamps = new int[128];
+    private int stamp = 0;
+    private int size = 0;
+    private final List<RiskAction> result = new ArrayList<>();
+
+    private void prune(Risk game) {
+      result.clear();
+      Set<RiskAction> possibleActions = game.getPossibleActions();
+      if(RiskUtils.isInitialPlacingPhase(game.getBoard())) {
+        result.addAll(possibleActions);
+        return;
+      }
+      group(possibleActions);
+      Bitboard bitboard = RiskUtils.createBitboard(game);
+      if(game.getBoard().isAttackPhase())
+        keepGoodAttacks(game, bitboard);
+      if(game.getBoard().isReinforcementPhase())
+        keepGoodReinforcements(bitboard);
+      else
+        removeBadEndphase(bitboard);
+      if(game.getBoard().isFortifyPhase())
+        keepGoodFortifies(game, bitboard);
+      collect();
+    }
+
+    private void collect() {
+      for(int i = 0; i < size; i++) {
+        if(kept[i])
+          result.add(actions[i]);
+      }
+    }
+
+    /**
+     * Keeps the action with the highest troops of its group and the ones with half of it, see
+     * {@link RiskUtils#groupActions(Set)}. If several actions of a group hold the highest troops the last one is kept.
+     */
+    private void group(Set<RiskAction> possibleActions) {
+      ensureCapacity(possibleActions.size());
+      if(++stamp == 0) {
+        Arrays.fill(groupStamps, 0);
+        stamp = 1;
+      }
+      size = 0;
+      for(RiskAction action : possibleActions) {
+        int group = findGroup(action.attackingId(), action.defendingId());
+        if(groupStamps[group] != stamp || action.troops() >= groupMax[group]) {
+          groupStamps[group] = stamp;
+          groupMax[group] = action.troops();
+          groupBest[group] = size;
+        }
+        actions[size] = action;
+        groups[size] = group;
+        size++;
+      }
+      for(int i = 0; i < size; i++) {
+        int max = groupMax[groups[i]];
+        kept[i] = groupBest[groups[i]] == i || actions[i].troops() == max / 2;
+      }
+    }
+
+    private int findGroup(int sourceId, int targetId) {
+      long key = ((long) sourceId << 32) | (targetId & 0xFFFFFFFFL);
+      int mask = groupKeys.length - 1;
+      int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+      while(groupStamps[slot] == stamp && groupKeys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      groupKeys[slot] = key;
+      return slot;
+    }
+
+    private void ensureCapacity(int count) {
+      if(actions.length < count) {
+        int capacity = Integer.highestOneBit(count) << 1;
+        actions = new RiskAction[capacity];
+        groups = new int[capacity];
+        kept = new boolean[capacity];
+        good = new boolean[capacity];
+      }
+      if(groupKeys.length < 2 * count) {
+        int capacity = Integer.highestOneBit(count) << 2;
+        groupKeys = new long[capacity];
+        groupMax = new int[capacity];
+        groupBest = new int[capacity];
+        groupStamps = new int[capacity];
+        stamp = 0;
+      }
+    }
+
+    /**
+     * Same as {@link RiskActionPruner#pruneBadAttacks(Risk, Bitboard, Set)}
+     */
+    private void keepGoodAttacks(Risk game, Bitboard bitboard) {
+      int goodCount = 0;
+      for(int i = 0; i < size; i++) {
+        int targetId = RiskUtils.getTargetOfAction(actions[i]);
+        good[i] = kept[i] && (!RiskUtils.isTerritoryOfEnemy(bitboard, targetId)
+                || game.getBoard().getTerritoryTroops(targetId) < actions[i].troops());
+        if(good[i])
+          goodCount++;
+      }
+      for(int i = 0; i < size; i++) {
+        if(goodCount == 1 && kept[i] && !good[i]) {
+          int targetId = RiskUtils.getTargetOfAction(actions[i]);
+          good[i] = RiskUtils.isTerritoryOfEnemy(bitboard, targetId) && game.getBoard()
+                  .getTerritoryTroops(actions[i].attackingId()) - 3 > game.getBoard().getTerritoryTroops(targetId);
+        }
+        kept[i] = good[i];
+      }
+    }
+
+    /**
+     * Same as {@link RiskActionPruner#pruneBadReinforcements(Risk, Bitboard, Set)}
+     */
+    private void keepGoodReinforcements(Bitboard bitboard) {
+      boolean anyGood = false;
+      for(int i = 0; i < size; i++) {
+        int targetId = RiskUtils.getTargetOfAction(actions[i]);
+        good[i] = kept[i] && (!(targetId >= 0 && actions[i].attackingId() == -1)
+                || RiskUtils.hasNeighbouringEnemy(bitboard, targetId));
+        anyGood |= good[i];
+      }
+      if(anyGood)
+        System.arraycopy(good, 0, kept, 0, size);
+    }
+
+    /**
+     * Same as {@link RiskActionPruner#pruneBadEndphase(Risk, Bitboard, Set)}
+     */
+    private void removeBadEndphase(Bitboard bitboard) {
+      int endPhase = -1;
+      boolean hasGoodActionLeft = false;
+      for(int i = 0; i < size; i++) {
+        if(!kept[i])
+          continue;
+        if(isEndPhase(actions[i]))
+          endPhase = i;
+        hasGoodActionLeft |= RiskUtils.isTerritoryOfEnemy(bitboard, actions[i].selected());
+      }
+      if(hasGoodActionLeft && endPhase >= 0)
+        kept[endPhase] = false;
+    }
+
+    /**
+     * Same as {@link RiskActionPruner#pruneBadFortifies(Risk, Bitboard, Set)}
+     */
+    private void keepGoodFortifies(Risk game, Bitboard bitboard) {
+      int[] distances = RiskUtils.calculateDistanceMapToClosestEnemyTerritories(bitboard);
+      int before = 0, after = 0, endPhase = -1;
+      for(int i = 0; i < size; i++) {
+        if(!kept[i])
+          continue;
+        before++;
+        RiskAction action = actions[i];
+        if(isEndPhase(action)) {
+          endPhase = i;
+        } else if(distances[action.fortifyingId()] <= distances[action.fortifiedId()]
+                || game.getBoard().getTerritoryTroops(action.fortifyingId()) - 1 != action.troops()) {
+          kept[i] = false;
+          continue;
+        }
+        after++;
+      }
+      if(endPhase >= 0 && after > 1 && after < before)
+        kept[endPhase] = false;
+    }
+  }
 }
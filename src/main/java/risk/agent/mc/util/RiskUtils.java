@@ -4,16 +4,13 @@ import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
 import at.ac.tuwien.ifs.sge.game.risk.board.RiskTerritory;
+import risk.agent.mc.data.Bitboard;
+import risk.agent.mc.data.BoardTopology;
 import risk.agent.mc.data.RiskActionIdentifier;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 
 /**
@@ -23,6 +20,8 @@ import java.util.Set;
 public class RiskUtils {
 
   private static int playerId = -1;
+  private static BoardTopology topology = null;
+  private static volatile boolean placingPhaseOver = false;
 
   /**
    * Sets the player id of our agent to be used in future calculations.
@@ -31,6 +30,28 @@ public class RiskUtils {
    */
   public static void initialize(int pId) {
     playerId = pId;
+    placingPhaseOver = false;
+  }
+
+  /**
+   * Tracks the phase of the actual game. Once every territory of the actual game is occupied, the initial placing
+   * phase is over for good and {@link RiskUtils#isInitialPlacingPhase(RiskBoard)} no longer has to look at the
+   * territories of the states that are searched.
+   * @param game the state of the actual game
+   */
+  public static void updatePhase(Risk game) {
+    if(!placingPhaseOver && !isInitialPlacingPhase(game.getBoard()))
+      placingPhaseOver = true;
+  }
+
+  /**
+   * Sets the topology of the current game. The graph queries of {@link RiskUtils} read the neighbours and continents
+   * from it instead of the maps of the {@link RiskBoard}.
+   * Has to be called once the board of the game is known and before any of these queries is used.
+   * @param boardTopology the {@link BoardTopology} of the current game
+   */
+  public static void setTopology(BoardTopology boardTopology) {
+    topology = boardTopology;
   }
 
   /**
@@ -64,97 +85,54 @@ public class RiskUtils {
   }
 
   /**
-   * Calculates the distance from the territory with territoryId
-   * to the closest enemy territory
+   * Calculates a distance map from each friendly territory to each nearest neighbor
+   * Distance 0 means that the territory with that id is an enemy territory
    * @param game the game state on which to make the calculation
-   * @param territoryId the origin territory for the calculation
-   * @return the closest distance to an enemy territory
+   * @return a map from all territories with their distances to the closest enemy
    */
-  public static int calculateDistanceToClosestEnemyTerritory(Risk game, int territoryId) {
-    Queue<Integer> q = new LinkedList<>();
-    int nrOfTerritories = game.getBoard().getTerritories().size();
-    boolean[] visited = new boolean[nrOfTerritories];
-    int[] distance = new int[nrOfTerritories];
-
-    distance[territoryId] = 0;
-    q.add(territoryId);
-
-    while (!q.isEmpty()) {
-      int curr = q.poll();
-
-      for (int neighbour : game.getBoard().neighboringTerritories(curr)) {
-        if (!visited[neighbour]) {
-          // Check if enemy territory
-          if (game.getBoard().getTerritories().get(neighbour).getOccupantPlayerId() != playerId) {
-            return distance[curr] + 1;
-          }
-          visited[neighbour] = true;
-          q.add(neighbour);
-          distance[neighbour] = distance[curr] + 1;
-        }
-      }
-    }
-    return -1;
+  public static int[] calculateDistanceMapToClosestEnemyTerritories(Risk game) {
+    return calculateDistanceMapToClosestEnemyTerritories(createBitboard(game));
   }
 
   /**
    * Calculates a distance map from each friendly territory to each nearest neighbor
    * Distance 0 means that the territory with that id is an enemy territory
-   * @param game the game state on which to make the calculation
+   * @param bitboard the owners of the territories of the game state
    * @return a map from all territories with their distances to the closest enemy
    */
-  public static int[] calculateDistanceMapToClosestEnemyTerritories(Risk game) {
-    Queue<Integer> q = new LinkedList<>();
-    int nrOfTerritories = game.getBoard().getTerritories().size();
-    boolean[] visited = new boolean[nrOfTerritories];
-    int[] distance = new int[nrOfTerritories];
-
-    // Add all enemy territories to the queue
-    for (Map.Entry<Integer, RiskTerritory> entry : game.getBoard().getTerritories().entrySet()) {
-      if (entry.getValue().getOccupantPlayerId() == playerId) continue;
-
-      visited[entry.getKey()] = true;
-      distance[entry.getKey()] = 0;
-      q.add(entry.getKey());
-    }
-
-    while (!q.isEmpty()) {
-      int curr = q.poll();
-
-      for (int neighbour : game.getBoard().neighboringTerritories(curr)) {
-        if (!visited[neighbour]) {
-          visited[neighbour] = true;
-          q.add(neighbour);
-          distance[neighbour] = distance[curr] + 1;
-        }
-      }
-    }
+  public static int[] calculateDistanceMapToClosestEnemyTerritories(Bitboard bitboard) {
+    int[] distance = new int[topology.getTerritoryCount()];
+    topology.calculateDistancesTo(topology.getTerritoryMask() & ~bitboard.getOwnerMask(playerId), distance);
     return distance;
   }
 
   /**
-   * Sums up all troops of the territories given in the given game state
+   * Creates a {@link Bitboard} with the owners of the given game state
    * @param game the game state
-   * @param neighbouringEnemyList the list of territories
-   * @return the sum of the number of troops in the given territories
+   * @return the owners of all territories as bitmasks
    */
-  public static int getTotalTroopsOfNeighbouringEnemies(Risk game, Collection<Integer> neighbouringEnemyList) {
-    int total = 0;
-    Map<Integer, RiskTerritory> territories = game.getBoard().getTerritories();
-    for(Integer id : neighbouringEnemyList) {
-      total += territories.get(id).getTroops();
-    }
-    return total;
+  public static Bitboard createBitboard(Risk game) {
+    return Bitboard.of(game, topology);
   }
 
   /**
-   * Calculates the sum of troops of all enemy territories surrounding the territory with the given id
-   * @param game the game state
-   * @param territoryId the territory from where to get the enemies
-   * @return the sum of enemy troops around the given territory
+   * Return if the enemy territory is friendly or not, using the ownership masks of a game state
+   * @param bitboard the {@link Bitboard} of the game state
+   * @param territoryId the territory to check the friendliness for
+   * @return true if enemy, else false
+   */
+  public static boolean isTerritoryOfEnemy(Bitboard bitboard, int territoryId) {
+    return territoryId >= 0 && bitboard.isEnemy(territoryId, playerId);
+  }
+
+  /**
+   * Checks if any neighbour of our territory with the given id is an enemy territory
+   * @param bitboard the {@link Bitboard} of the game state
+   * @param territoryId the territory to check the neighbours of
+   * @return true if at least one neighbour is an enemy territory, else false
    */
-  public static int getTotalTroopsOfNeighbouringEnemies(Risk game, int territoryId) {
-    return getTotalTroopsOfNeighbouringEnemies(game, game.getBoard().neighboringEnemyTerritories(territoryId));
+  public static boolean hasNeighbouringEnemy(Bitboard bitboard, int territoryId) {
+    return bitboard.getEnemyNeighborMask(territoryId, playerId) != 0;
   }
 
   /**
@@ -170,17 +148,6 @@ public class RiskUtils {
     return id != playerId && id != -1;
   }
 
-  /**
-   * Checks if territory B is closer to an enemy as territory A
-   * @param game the game state
-   * @param initialT the first territory id (A)
-   * @param newT the second territory id (B)
-   * @return if B is closer as A true, else false
-   */
-  public static boolean isNewTerritoryCloserToEnemy(Risk game, int initialT, int newT) {
-    return calculateDistanceToClosestEnemyTerritory(game, newT) - calculateDistanceToClosestEnemyTerritory(game, initialT) < 0;
-  }
-
   /**
    * Gets the target territory id of an action
    * @param action the action to extract the target from
@@ -190,31 +157,18 @@ public class RiskUtils {
     return action.selected();
   }
 
-  /**
-   * Checks if the given territories belong to different continents
-   * @param board the game state
-   * @param territoryIds the territories to check for
-   * @return true if they belong to different continents, else false
-   */
-  public static boolean territoriesBelongToDifferentContinents(RiskBoard board, List<Integer> territoryIds) {
-    Map<Integer, RiskTerritory> territories = board.getTerritories();
-    int baseline = territories.get(territoryIds.get(0)).getContinentId();
-    int current;
-    for (Integer territoryId : territoryIds) {
-      current = territories.get(territoryId).getContinentId();
-      if (baseline != current)
-        return true;
-    }
-    return false;
-  }
-
   /**
    * Checks if the board is in the initial placing phase
    * @param board the board to check on
    * @return true if in the initial placing phase, else false
    */
   public static boolean isInitialPlacingPhase(RiskBoard board) {
-    return board.getTerritories().values().parallelStream()
-            .anyMatch(territory -> territory.getOccupantPlayerId() == -1);
+    if(placingPhaseOver)
+      return false;
+    for(RiskTerritory territory : board.getTerritories().values()) {
+      if(territory.getOccupantPlayerId() == -1)
+        return true;
+    }
+    return false;
   }
 }
@@ -0,0 +1,68 @@
+package risk.agent.mc.mcts;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import org.junit.jupiter.api.Test;
+import risk.agent.mc.data.ActionCodec;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the states a tree replays between its checkpoints with the states of a tree that caches the state of every
+ * node, see {@link NodeArena#NodeArena(Risk, ActionCodec, int)}
+ */
+public class NodeArenaTest {
+
+  private static final int REPLAYED_CHECKPOINT_INTERVAL = 3;
+  private static final int GAMES = 5;
+  private static final int DESCENTS_PER_GAME = 200;
+  private static final int MAX_DEPTH = 12;
+
+  @Test
+  void replayedStatesEqualTheCachedStates() {
+    Random random = new Random(42);
+    for(int game = 0; game < GAMES; game++) {
+      Risk start = new Risk();
+      ActionCodec codec = new ActionCodec();
+      NodeArena cached = new NodeArena(start, codec, 1);
+      NodeArena replayed = new NodeArena(start, codec, REPLAYED_CHECKPOINT_INTERVAL);
+      for(int descent = 0; descent < DESCENTS_PER_GAME; descent++) {
+        int node = NodeArena.ROOT;
+        while(cached.isExpanded(node) && cached.getChildCount(node) > 0) {
+          node = cached.getFirstChild(node) + random.nextInt(cached.getChildCount(node));
+        }
+        Risk state = cached.getResultingState(node);
+        if(cached.getDepth(node) >= MAX_DEPTH || state.isGameOver())
+          continue;
+        long[] actions = state.getPossibleActions().stream().mapToLong(codec::encode).toArray();
+        //both trees get the same children, so the nodes have the same indices in both
+        cached.setChildren(node, actions, actions.length);
+        replayed.setChildren(node, actions, actions.length);
+      }
+      assertEquals(cached.size(), replayed.size());
+      for(int node = 0; node < cached.size(); node++) {
+        assertSameState(cached.getState(node), replayed.getState(node), "The state of node " + node + " differs");
+        assertSameState(cached.getResultingState(node), replayed.getResultingState(node),
+                "The resulting state of node " + node + " differs");
+      }
+      assertTrue(replayed.getEstimatedBytes() < cached.getEstimatedBytes(), "The replaying tree cached every state");
+    }
+  }
+
+  private static void assertSameState(Risk expected, Risk actual, String message) {
+    assertEquals(expected.getActionRecords().size(), actual.getActionRecords().size(), message);
+    assertEquals(expected.getCurrentPlayer(), actual.getCurrentPlayer(), message);
+    assertEquals(expected.isGameOver(), actual.isGameOver(), message);
+    assertEquals(expected.getPossibleActions(), actual.getPossibleActions(), message);
+    RiskBoard expectedBoard = expected.getBoard();
+    RiskBoard actualBoard = actual.getBoard();
+    for(int id : expectedBoard.getTerritoryIds()) {
+      assertEquals(expectedBoard.getTerritoryTroops(id), actualBoard.getTerritoryTroops(id), message);
+      assertEquals(expectedBoard.getTerritories().get(id).getOccupantPlayerId(),
+              actualBoard.getTerritories().get(id).getOccupantPlayerId(), message);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package risk.agent.mc.sim;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import risk.agent.mc.data.BoardTopology;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the moves drawn by {@link SimMoveSampler} with the moves generated by {@link SimMoveGenerator} on the
+ * states of random games: every drawn move has to be generated, and every generated move has to be drawn about as
+ * often as the others
+ */
+public class SimMoveSamplerTest {
+
+  private static final int PLAYERS = 2;
+  private static final int PERSPECTIVE = 0;
+  private static final int GAMES = 20;
+  private static final int MAX_MOVES_PER_GAME = 3000;
+  private static final int DRAWN_STATE_INTERVAL = 25;
+  private static final int DRAWS_PER_MOVE = 200;
+
+  private static SimBoard start;
+
+  @BeforeAll
+  static void setUp() {
+    Risk game = new Risk();
+    BoardTopology topology = new BoardTopology(game.getBoard());
+    double[] continentBaseRewards = new double[topology.getContinentCount()];
+    Arrays.fill(continentBaseRewards, 1.d);
+    start = SimBoard.create(game, topology, PLAYERS, PERSPECTIVE, continentBaseRewards);
+  }
+
+  @Test
+  void sampledMovesAreDrawnUniformlyFromTheGeneratedMoves() {
+    Random random = new Random(42);
+    MoveBuffer moves = new MoveBuffer();
+    int drawnStates = 0;
+    for(int game = 0; game < GAMES; game++) {
+      SimBoard board = start.copy();
+      for(int i = 0; i < MAX_MOVES_PER_GAME && !board.isGameOver(); i++) {
+        if(board.isAttackPending()) {
+          board.apply(board.rollCasualties(random));
+          continue;
+        }
+        boolean pruned = board.getCurrentPlayer() == PERSPECTIVE;
+        SimMoveGenerator.generate(board, moves, pruned);
+        Set<Integer> generated = new HashSet<>();
+        for(int m = 0; m < moves.size(); m++) {
+          generated.add(moves.get(m));
+        }
+        assertEquals(moves.size(), generated.size(), "A move was generated twice in phase " + board.getPhase());
+        if(generated.isEmpty()) {
+          assertEquals(SimMoveSampler.NO_MOVE, SimMoveSampler.sample(board, random, pruned));
+          break;
+        }
+        if(i % DRAWN_STATE_INTERVAL == 0) {
+          assertDrawnUniformly(board, random, pruned, generated);
+          drawnStates++;
+        }
+        int move = SimMoveSampler.sample(board, random, pruned);
+        assertTrue(generated.contains(move), "A move that is not generated was drawn in phase " + board.getPhase());
+        board.apply(move);
+      }
+    }
+    assertTrue(drawnStates > 0, "No state was drawn from repeatedly");
+  }
+
+  private static void assertDrawnUniformly(SimBoard board, Random random, boolean pruned, Set<Integer> generated) {
+    Map<Integer, Integer> draws = new HashMap<>();
+    for(int i = 0; i < generated.size() * DRAWS_PER_MOVE; i++) {
+      draws.merge(SimMoveSampler.sample(board, random, pruned), 1, Integer::sum);
+    }
+    assertEquals(generated, draws.keySet(), "The drawn moves differ in phase " + board.getPhase());
+    for(int count : draws.values()) {
+      assertTrue(Math.abs(count - DRAWS_PER_MOVE) < DRAWS_PER_MOVE / 2,
+              "A move was drawn " + count + " instead of about " + DRAWS_PER_MOVE + " times in phase "
+                      + board.getPhase());
+    }
+  }
+}
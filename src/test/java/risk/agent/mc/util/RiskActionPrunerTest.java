@@ -0,0 +1,111 @@
+package risk.agent.mc.util;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import risk.agent.mc.data.BoardTopology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the single pass pruning of {@link RiskActionPruner#pruneActions(Risk)} with the pruning pipeline of
+ * {@link RiskActionPruner#getPrunedActions(Risk)} on the states of random games
+ */
+public class RiskActionPrunerTest {
+
+  private static final int PLAYER_ID = 0;
+  private static final int GAMES = 20;
+  private static final int MAX_ACTIONS_PER_GAME = 3000;
+
+  private enum Phase {
+    INITIAL_PLACEMENT,
+    REINFORCEMENT,
+    ATTACK,
+    OCCUPY,
+    FORTIFY
+  }
+
+  @BeforeAll
+  static void setUp() {
+    RiskUtils.initialize(PLAYER_ID);
+    RiskUtils.setTopology(new BoardTopology(new Risk().getBoard()));
+  }
+
+  @Test
+  void singlePassPruningKeepsTheSameActionsAsThePipeline() {
+    Random random = new Random(42);
+    Map<Phase, Integer> comparedStates = new EnumMap<>(Phase.class);
+    for(int game = 0; game < GAMES; game++) {
+      Risk state = new Risk();
+      for(int i = 0; i < MAX_ACTIONS_PER_GAME && !state.isGameOver(); i++) {
+        if(state.getCurrentPlayer() < 0) {
+          //the dice of an attack are rolled by the game
+          state = (Risk) state.doAction(state.determineNextAction());
+          continue;
+        }
+        Phase phase = phaseOf(state);
+        assertEquals(RiskActionPruner.getPrunedActions(state), new HashSet<>(RiskActionPruner.pruneActions(state)),
+                "The single pass pruning differs in the " + phase + " phase");
+        comparedStates.merge(phase, 1, Integer::sum);
+        List<RiskAction> actions = new ArrayList<>(state.getPossibleActions());
+        state = (Risk) state.doAction(actions.get(random.nextInt(actions.size())));
+      }
+    }
+    for(Phase phase : Phase.values()) {
+      assertTrue(comparedStates.getOrDefault(phase, 0) > 0, "No state of the " + phase + " phase was compared");
+    }
+  }
+
+  @Test
+  void groupingKeepsOneOfTheActionsTiedForTheHighestTroops() {
+    //equal actions only end up in one set by identity, which is the only way two actions of a group can tie
+    Set<RiskAction> actions = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<RiskAction> tied = List.of(RiskAction.attack(1, 2, 3), RiskAction.attack(1, 2, 3));
+    actions.addAll(tied);
+    actions.add(RiskAction.attack(1, 2, 2));
+    actions.add(RiskAction.attack(1, 2, 1));
+    actions.add(RiskAction.attack(4, 2, 1));
+    List<RiskAction> expected = new ArrayList<>(RiskUtils.groupActions(actions));
+    List<RiskAction> grouped = new ArrayList<>(RiskActionPruner.groupActions(actions));
+    assertEquals(3, expected.size());
+    assertEquals(expected.size(), grouped.size());
+    assertEquals(new HashSet<>(expected), new HashSet<>(grouped));
+    RiskAction last = null;
+    for(RiskAction action : actions) {
+      if(tied.stream().anyMatch(tie -> tie == action))
+        last = action;
+    }
+    assertSame(last, findWithTroops(expected, 3), "The pipeline keeps the last of the tied actions");
+    assertSame(last, findWithTroops(grouped, 3), "The single pass pruning keeps another of the tied actions");
+  }
+
+  private static RiskAction findWithTroops(List<RiskAction> actions, int troops) {
+    return actions.stream().filter(action -> action.troops() == troops).findFirst().orElse(null);
+  }
+
+  private static Phase phaseOf(Risk state) {
+    RiskBoard board = state.getBoard();
+    if(RiskUtils.isInitialPlacingPhase(board))
+      return Phase.INITIAL_PLACEMENT;
+    if(board.isReinforcementPhase())
+      return Phase.REINFORCEMENT;
+    if(board.isFortifyPhase())
+      return Phase.FORTIFY;
+    boolean occupy = state.getPossibleActions().stream().anyMatch(action -> action.selected() == -2);
+    return occupy ? Phase.OCCUPY : Phase.ATTACK;
+  }
+}